@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.benchmark;
+
+import org.eclipse.jface.preference.PreferencePage;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+
+/**
+ * Empty preference page used as page class of the contributed nodes in the
+ * benchmarks.
+ */
+public class BenchmarkPreferencePage extends PreferencePage {
+
+	@Override
+	protected Control createContents(Composite parent) {
+		return null;
+	}
+}
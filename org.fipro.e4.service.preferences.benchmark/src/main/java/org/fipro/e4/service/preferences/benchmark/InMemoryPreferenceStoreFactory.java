@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IScopeContext;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.fipro.e4.service.preferences.IPreferenceStoreFactoryService;
+import org.fipro.e4.service.preferences.PreferenceStoreCacheStatistics;
+import org.fipro.e4.service.preferences.ScopedPreferenceStore;
+
+/**
+ * {@link IPreferenceStoreFactoryService} that creates the stores on
+ * {@link InMemoryScope}s, used to bind the
+ * {@link org.fipro.e4.service.preferences.impl.PreferenceManagerContextFunction}
+ * without a running platform.
+ */
+public class InMemoryPreferenceStoreFactory implements IPreferenceStoreFactoryService {
+
+	private final IEclipsePreferences root = InMemoryScope.createRoot();
+	private final IScopeContext instance = new InMemoryScope(this.root, "instance");
+	private final IScopeContext defaults = new InMemoryScope(this.root, "default");
+	private final Map<String, IPreferenceStore> stores = new ConcurrentHashMap<>();
+
+	@Override
+	public IPreferenceStore getPreferenceStoreInstance(String qualifier) {
+		return getPreferenceStoreInstance(this.instance, qualifier);
+	}
+
+	@Override
+	public IPreferenceStore getPreferenceStoreInstance(IScopeContext scope, String qualifier,
+			IScopeContext... searchContexts) {
+		return this.stores.computeIfAbsent(qualifier,
+				q -> new ScopedPreferenceStore(scope, q, q, this.defaults));
+	}
+
+	@Override
+	public PreferenceStoreCacheStatistics getCacheStatistics() {
+		return new PreferenceStoreCacheStatistics(this.stores.size(), 0, 0, this.stores.size(), 0);
+	}
+}
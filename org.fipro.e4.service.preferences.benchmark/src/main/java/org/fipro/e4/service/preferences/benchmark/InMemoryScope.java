@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.benchmark;
+
+import org.eclipse.core.internal.preferences.EclipsePreferences;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IScopeContext;
+import org.fipro.e4.service.preferences.ScopedPreferenceStore;
+
+/**
+ * {@link IScopeContext} that keeps its nodes in memory, so the
+ * {@link ScopedPreferenceStore} can be benchmarked without a running platform
+ * and without file system access on flush.
+ */
+public class InMemoryScope implements IScopeContext {
+
+	private final IEclipsePreferences root;
+	private final String name;
+
+	/**
+	 * 
+	 * @param root
+	 *            the root node shared by the scopes of a benchmark
+	 * @param name
+	 *            the name of the scope
+	 */
+	public InMemoryScope(IEclipsePreferences root, String name) {
+		this.root = root;
+		this.name = name;
+	}
+
+	/**
+	 * @return a new in-memory root node
+	 */
+	public static IEclipsePreferences createRoot() {
+		return new EclipsePreferences();
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public IEclipsePreferences getNode(String qualifier) {
+		return (IEclipsePreferences) this.root.node(this.name).node(qualifier);
+	}
+
+	@Override
+	public IPath getLocation() {
+		return null;
+	}
+}
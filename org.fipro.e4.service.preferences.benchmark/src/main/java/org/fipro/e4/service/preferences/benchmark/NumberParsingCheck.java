@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.benchmark;
+
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IScopeContext;
+import org.fipro.e4.service.preferences.PreferenceKeySchema;
+import org.fipro.e4.service.preferences.ScopedPreferenceStore;
+
+/**
+ * Check for the parsing of stored numeric values in the
+ * {@link ScopedPreferenceStore}. Malformed values, including values with
+ * non-ASCII digits that the JDK parse methods of floating point numbers
+ * reject, need to return the default value without throwing an exception. The
+ * values are read without value cache, with value cache and via a key schema.
+ * The check fails with an {@link IllegalStateException} if a read returns an
+ * unexpected value or throws an exception.
+ * <p>
+ * This is not a JMH benchmark. It is started via its main method:
+ * </p>
+ *
+ * <pre>
+ * java -cp org.fipro.e4.service.preferences.benchmark/target/benchmarks.jar org.fipro.e4.service.preferences.benchmark.NumberParsingCheck
+ * </pre>
+ */
+public final class NumberParsingCheck {
+
+	private static final String QUALIFIER = "org.fipro.numbers";
+
+	/**
+	 * Malformed values, the Arabic-Indic digit one, full-width digits and a
+	 * hexadecimal value with a full-width letter.
+	 */
+	private static final String[] MALFORMED = { "\u0661", "\uff11\uff12", "0x\uff21p1", "1.5x", "" };
+
+	private NumberParsingCheck() {
+		// private default constructor for helper class
+	}
+
+	public static void main(String[] args) {
+		IEclipsePreferences root = InMemoryScope.createRoot();
+		IScopeContext instance = new InMemoryScope(root, "instance");
+		IScopeContext defaults = new InMemoryScope(root, "default");
+		ScopedPreferenceStore store = new ScopedPreferenceStore(instance, QUALIFIER, QUALIFIER, defaults);
+
+		for (boolean cached : new boolean[] { false, true }) {
+			store.setValueCacheEnabled(cached);
+			for (String value : MALFORMED) {
+				instance.getNode(QUALIFIER).put("key", value);
+				check(store.getInt("key") == 0 && store.getLong("key") == 0L
+						&& store.getFloat("key") == 0f && store.getDouble("key") == 0d, value);
+			}
+			instance.getNode(QUALIFIER).put("key", "0x1p1");
+			check(store.getFloat("key") == 2f && store.getDouble("key") == 2d, "0x1p1");
+			instance.getNode(QUALIFIER).put("key", "12");
+			check(store.getInt("key") == 12 && store.getLong("key") == 12L, "12");
+		}
+
+		store.setKeySchema(PreferenceKeySchema.builder()
+				.addIntKey("int", 7)
+				.addLongKey("long", 7L)
+				.addFloatKey("float", 7f)
+				.addDoubleKey("double", 7d)
+				.build());
+		for (String value : MALFORMED) {
+			instance.getNode(QUALIFIER).put("int", value);
+			instance.getNode(QUALIFIER).put("long", value);
+			instance.getNode(QUALIFIER).put("float", value);
+			instance.getNode(QUALIFIER).put("double", value);
+			check(store.getInt("int") == 7 && store.getLong("long") == 7L
+					&& store.getFloat("float") == 7f && store.getDouble("double") == 7d, value);
+		}
+		store.dispose();
+		System.out.println(MALFORMED.length + " malformed values return the default");
+	}
+
+	private static void check(boolean valid, String value) {
+		if (!valid) {
+			throw new IllegalStateException("Unexpected value read for \"" + value + "\"");
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.preference.IPreferenceNode;
+import org.eclipse.jface.preference.PreferenceManager;
+import org.fipro.e4.service.preferences.PreferenceNodeContribution;
+import org.fipro.e4.service.preferences.impl.PreferenceManagerContextFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks binding a number of {@link PreferenceNodeContribution}s to the
+ * {@link PreferenceManagerContextFunction}. The contributions form a random
+ * tree that is generated with a fixed seed, and are bound either in random
+ * order, so children are often bound before their parents, or sorted with
+ * the parents first. After every invocation the resulting
+ * {@link PreferenceManager} tree is verified.
+ * <p>
+ * {@link #bind()} measures the binds including the first request of the
+ * {@link PreferenceManager} that builds the tree, {@link #record()} only the
+ * binds as they happen on startup.
+ * </p>
+ * <p>
+ * Run with <code>-prof gc</code> to measure the allocations per bind run.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreferenceNodeRegistrationBenchmark {
+
+	static final String QUALIFIER = "org.fipro.benchmark";
+
+	/**
+	 * The number of contributed preference nodes.
+	 */
+	@Param({ "100", "1500" })
+	public int contributions;
+
+	/**
+	 * The order in which the contributions are bound.
+	 */
+	@Param({ "random", "parentsFirst" })
+	public String order;
+
+	private final InMemoryPreferenceStoreFactory storeFactory = new InMemoryPreferenceStoreFactory();
+
+	/**
+	 * The full path of every node, the index is the creation order.
+	 */
+	private String[] fullPaths;
+
+	/**
+	 * The path of the parent of every node, <code>null</code> for root nodes.
+	 */
+	private String[] parentPaths;
+
+	/**
+	 * The bind order as indexes into the node arrays.
+	 */
+	private List<Integer> bindOrder;
+
+	private List<PreferenceNodeContribution> nodes;
+
+	private PreferenceManagerContextFunction function;
+
+	@Setup(Level.Trial)
+	public void createTree() {
+		Random random = new Random(4711);
+		this.fullPaths = new String[this.contributions];
+		this.parentPaths = new String[this.contributions];
+		this.bindOrder = new ArrayList<>();
+		for (int i = 0; i < this.contributions; i++) {
+			String id = "node" + i;
+			// about every tenth node is a root node, the others are added to a
+			// random node created before
+			if (i == 0 || random.nextInt(10) == 0) {
+				this.fullPaths[i] = id;
+			} else {
+				this.parentPaths[i] = this.fullPaths[random.nextInt(i)];
+				this.fullPaths[i] = this.parentPaths[i] + "." + id;
+			}
+			this.bindOrder.add(i);
+		}
+		if ("random".equals(this.order)) {
+			Collections.shuffle(this.bindOrder, random);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void createContributions() {
+		// the nodes are added to the tree of the manager and can not be reused
+		this.nodes = new ArrayList<>(this.contributions);
+		for (int index : this.bindOrder) {
+			this.nodes.add(new PreferenceNodeContribution(
+					"node" + index, "Node " + index, BenchmarkPreferencePage.class, this.parentPaths[index], QUALIFIER));
+		}
+		this.function = new PreferenceManagerContextFunction();
+		this.function.addPreferenceStoreFactory(this.storeFactory);
+	}
+
+	@Benchmark
+	public Object bind() {
+		for (PreferenceNodeContribution node : this.nodes) {
+			this.function.addPreferenceNode(node);
+		}
+		return this.function.compute(null, null);
+	}
+
+	@Benchmark
+	public PreferenceManagerContextFunction record() {
+		for (PreferenceNodeContribution node : this.nodes) {
+			this.function.addPreferenceNode(node);
+		}
+		return this.function;
+	}
+
+	@TearDown(Level.Invocation)
+	public void verifyTree() {
+		PreferenceManager manager = (PreferenceManager) this.function.compute(null, null);
+		for (String path : this.fullPaths) {
+			if (manager.find(path) == null) {
+				throw new IllegalStateException("Node " + path + " was not added to the tree");
+			}
+		}
+		int count = 0;
+		for (IPreferenceNode root : manager.getRootSubNodes()) {
+			count += countNodes(root);
+		}
+		if (count != this.contributions) {
+			throw new IllegalStateException("Expected " + this.contributions + " nodes but found " + count);
+		}
+	}
+
+	private static int countNodes(IPreferenceNode node) {
+		int count = 1;
+		for (IPreferenceNode child : node.getSubNodes()) {
+			count += countNodes(child);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.jface.preference.IPreferencePage;
+import org.fipro.e4.service.preferences.ContributedPreferenceNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the creation of a preference page, which happens every time the
+ * preference dialog is opened and the node is selected.
+ * {@link #createPage()} creates and disposes the page via
+ * {@link ContributedPreferenceNode}, which uses the cached factory of the page
+ * class. {@link #injectPage()} creates the page via
+ * {@link ContextInjectionFactory#make(Class, IEclipseContext)}, as it was done
+ * for every open before. The benchmark page has no injection points, pages
+ * with injection points are still created via
+ * {@link ContextInjectionFactory} and are therefore not covered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreferencePageCreationBenchmark {
+
+	static final String QUALIFIER = "org.fipro.benchmark";
+
+	private ContributedPreferenceNode node;
+
+	private IEclipseContext context;
+
+	@Setup
+	public void setup() {
+		this.node = new ContributedPreferenceNode(
+				"page", "Page", null, BenchmarkPreferencePage.class, null, QUALIFIER);
+		this.context = EclipseContextFactory.create();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.node.dispose();
+		this.context.dispose();
+	}
+
+	@Benchmark
+	public IPreferencePage createPage() {
+		this.node.createPage();
+		IPreferencePage page = this.node.getPage();
+		this.node.disposeResources();
+		return page;
+	}
+
+	@Benchmark
+	public IPreferencePage injectPage() {
+		IPreferencePage page = ContextInjectionFactory.make(BenchmarkPreferencePage.class, this.context);
+		page.dispose();
+		return page;
+	}
+}
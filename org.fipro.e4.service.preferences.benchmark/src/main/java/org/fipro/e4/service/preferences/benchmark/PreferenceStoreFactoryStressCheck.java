@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.preferences.IScopeContext;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.fipro.e4.service.preferences.PreferenceStoreCacheStatistics;
+import org.fipro.e4.service.preferences.impl.PreferenceStoreFactoryServiceImpl;
+
+/**
+ * Stress check for the single instance guarantee of the
+ * {@link PreferenceStoreFactoryServiceImpl}. In every round a number of
+ * threads request the store of a new qualifier at the same time, and all of
+ * them need to get the same instance. The check fails with an
+ * {@link IllegalStateException} if a round returns different instances or if
+ * more than one store was created per qualifier.
+ * <p>
+ * This is not a JMH benchmark. It is started via its main method with the
+ * number of threads and rounds as optional arguments:
+ * </p>
+ *
+ * <pre>
+ * java -cp org.fipro.e4.service.preferences.benchmark/target/benchmarks.jar org.fipro.e4.service.preferences.benchmark.PreferenceStoreFactoryStressCheck 16 10000
+ * </pre>
+ */
+public final class PreferenceStoreFactoryStressCheck {
+
+	private PreferenceStoreFactoryStressCheck() {
+		// private default constructor for helper class
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+		// not activated, the stores are created without flush scheduler
+		PreferenceStoreFactoryServiceImpl factory = new PreferenceStoreFactoryServiceImpl();
+		IScopeContext scope = new InMemoryScope(InMemoryScope.createRoot(), "instance");
+		CyclicBarrier barrier = new CyclicBarrier(threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int round = 0; round < rounds; round++) {
+				String qualifier = "org.fipro.stress." + round;
+				List<Future<IPreferenceStore>> requests = new ArrayList<>(threads);
+				for (int i = 0; i < threads; i++) {
+					requests.add(executor.submit(() -> {
+						barrier.await(10, TimeUnit.SECONDS);
+						return factory.getPreferenceStoreInstance(scope, qualifier);
+					}));
+				}
+				IPreferenceStore expected = requests.get(0).get();
+				for (Future<IPreferenceStore> request : requests) {
+					if (request.get() != expected) {
+						throw new IllegalStateException("Different store instances for " + qualifier);
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		PreferenceStoreCacheStatistics statistics = factory.getCacheStatistics();
+		if (statistics.getMissCount() != rounds || statistics.getSize() != rounds) {
+			throw new IllegalStateException("Expected " + rounds + " created stores: " + statistics);
+		}
+		System.out.println(threads + " threads, " + rounds + " rounds: " + statistics);
+	}
+}
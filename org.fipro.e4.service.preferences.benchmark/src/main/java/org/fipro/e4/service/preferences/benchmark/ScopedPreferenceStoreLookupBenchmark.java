@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IScopeContext;
+import org.fipro.e4.service.preferences.ScopedPreferenceStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the lookup of values in a {@link ScopedPreferenceStore} over 1 to
+ * 5 search contexts. The looked up value is only set in the last search
+ * context, which is the worst case for the lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScopedPreferenceStoreLookupBenchmark {
+
+	static final String QUALIFIER = "org.fipro.benchmark";
+
+	/**
+	 * The number of search contexts of the store.
+	 */
+	@Param({ "1", "2", "3", "4", "5" })
+	public int searchContexts;
+
+	/**
+	 * The lookup optimization enabled on the store.
+	 */
+	@Param({ "none", "valueCache", "effectiveValueIndex" })
+	public String lookup;
+
+	private ScopedPreferenceStore store;
+
+	@Setup
+	public void setup() {
+		IEclipsePreferences root = InMemoryScope.createRoot();
+		IScopeContext[] contexts = new IScopeContext[this.searchContexts];
+		for (int i = 0; i < contexts.length; i++) {
+			contexts[i] = new InMemoryScope(root, "scope" + i);
+		}
+		this.store = new ScopedPreferenceStore(
+				contexts[0], QUALIFIER, QUALIFIER, new InMemoryScope(root, "default"));
+		if (contexts.length > 1) {
+			this.store.setSearchContexts(contexts);
+		}
+
+		IEclipsePreferences last = contexts[contexts.length - 1].getNode(QUALIFIER);
+		last.put("string.key", "value");
+		last.putInt("int.key", 42);
+		this.store.setDefault("default.key", "default");
+
+		if ("valueCache".equals(this.lookup)) {
+			this.store.setValueCacheEnabled(true);
+		} else if ("effectiveValueIndex".equals(this.lookup)) {
+			this.store.setEffectiveValueIndexEnabled(true);
+		}
+	}
+
+	@Benchmark
+	public String getString() {
+		return this.store.getString("string.key");
+	}
+
+	@Benchmark
+	public int getInt() {
+		return this.store.getInt("int.key");
+	}
+
+	@Benchmark
+	public String getStringDefault() {
+		return this.store.getString("default.key");
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return this.store.contains("string.key");
+	}
+
+	@Benchmark
+	public boolean isDefault() {
+		return this.store.isDefault("default.key");
+	}
+}
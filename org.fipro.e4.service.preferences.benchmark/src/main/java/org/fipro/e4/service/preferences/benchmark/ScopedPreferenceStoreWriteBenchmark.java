@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.fipro.e4.service.preferences.ScopedPreferenceStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks setting values in a {@link ScopedPreferenceStore} with a varying
+ * number of registered property change listeners, and saving the store.
+ * Every operation changes the value, so the listeners are notified and the
+ * store becomes dirty every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScopedPreferenceStoreWriteBenchmark {
+
+	static final String QUALIFIER = "org.fipro.benchmark";
+
+	/**
+	 * The number of property change listeners registered on the store.
+	 */
+	@Param({ "0", "10", "500" })
+	public int listeners;
+
+	private ScopedPreferenceStore store;
+
+	private int value;
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		IEclipsePreferences root = InMemoryScope.createRoot();
+		this.store = new ScopedPreferenceStore(
+				new InMemoryScope(root, "instance"), QUALIFIER, QUALIFIER, new InMemoryScope(root, "default"));
+		for (int i = 0; i < this.listeners; i++) {
+			this.store.addPropertyChangeListener(blackhole::consume);
+		}
+	}
+
+	@Benchmark
+	public void setValue() {
+		this.store.setValue("int.key", ++this.value);
+	}
+
+	@Benchmark
+	public void setValueAndSave() throws IOException {
+		this.store.setValue("int.key", ++this.value);
+		this.store.save();
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.SynchronousBundleListener;
+
+/**
+ * Registry of the OSGi service contexts used to create the pages of
+ * {@link ContributedPreferenceNode}s. All nodes of a bundle share one service
+ * context. The contexts are reference counted per bundle and disposed when the
+ * last node of a bundle releases it, or when the bundle is stopped. In the
+ * latter case the context is created again on the next access, which fails
+ * as long as the bundle is not started again. The bundle listener that
+ * tracks the stopped bundles is only registered while contexts are acquired.
+ */
+final class BundleServiceContexts {
+
+	private static final Map<Bundle, Entry> CONTEXTS = new HashMap<>();
+
+	private static final SynchronousBundleListener LISTENER = BundleServiceContexts::bundleChanged;
+
+	/**
+	 * The {@link BundleContext} the {@link #LISTENER} is registered with.
+	 */
+	private static BundleContext listenerContext;
+
+	private BundleServiceContexts() {
+		// private default constructor for helper class
+	}
+
+	/**
+	 * Acquire a reference to the service context of the given bundle. Every
+	 * call needs to be followed by a call to {@link #release(Bundle)}.
+	 *
+	 * @param bundle
+	 *            the bundle whose service context is requested
+	 */
+	static synchronized void acquire(Bundle bundle) {
+		CONTEXTS.computeIfAbsent(bundle, b -> new Entry()).references++;
+		registerListener();
+	}
+
+	/**
+	 * Release a reference to the service context of the given bundle. The
+	 * context is disposed if this was the last reference.
+	 *
+	 * @param bundle
+	 *            the bundle whose service context is released
+	 */
+	static synchronized void release(Bundle bundle) {
+		Entry entry = CONTEXTS.get(bundle);
+		if (entry != null && --entry.references == 0) {
+			CONTEXTS.remove(bundle);
+			entry.dispose();
+			if (CONTEXTS.isEmpty()) {
+				unregisterListener();
+			}
+		}
+	}
+
+	/**
+	 * @param bundle
+	 *            the bundle whose service context is requested, a reference
+	 *            must have been acquired via {@link #acquire(Bundle)}
+	 * @return the shared service context of the given bundle
+	 * @throws IllegalStateException
+	 *             if no reference was acquired or if the bundle is not active
+	 *             and therefore has no {@link BundleContext}
+	 */
+	static synchronized IEclipseContext get(Bundle bundle) {
+		Entry entry = CONTEXTS.get(bundle);
+		if (entry == null) {
+			throw new IllegalStateException("No service context acquired for " + bundle.getSymbolicName()); //$NON-NLS-1$
+		}
+		if (entry.context == null) {
+			BundleContext bundleContext = bundle.getBundleContext();
+			if (bundleContext == null) {
+				throw new IllegalStateException("No service context available for " + bundle.getSymbolicName() + " as the bundle is not active"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			entry.context = EclipseContextFactory.getServiceContext(bundleContext);
+		}
+		return entry.context;
+	}
+
+	private static void registerListener() {
+		Bundle bundle = FrameworkUtil.getBundle(BundleServiceContexts.class);
+		BundleContext context = (bundle != null) ? bundle.getBundleContext() : null;
+		// the listener is removed by the framework if this bundle is stopped
+		if (context != null && context != listenerContext) {
+			context.addBundleListener(LISTENER);
+			listenerContext = context;
+		}
+	}
+
+	private static void unregisterListener() {
+		if (listenerContext != null) {
+			try {
+				listenerContext.removeBundleListener(LISTENER);
+			} catch (IllegalStateException e) {
+				// this bundle was stopped, the framework removed the listener already
+			}
+			listenerContext = null;
+		}
+	}
+
+	private static synchronized void bundleChanged(BundleEvent event) {
+		if (event.getType() == BundleEvent.STOPPING) {
+			Entry entry = CONTEXTS.get(event.getBundle());
+			if (entry != null) {
+				entry.dispose();
+			}
+		}
+	}
+
+	private static final class Entry {
+
+		private IEclipseContext context;
+		private int references;
+
+		private void dispose() {
+			if (this.context != null) {
+				this.context.dispose();
+				this.context = null;
+			}
+		}
+	}
+}
@@ -13,8 +13,6 @@
  *******************************************************************************/
 package org.fipro.e4.service.preferences;
 
-import org.eclipse.e4.core.contexts.ContextInjectionFactory;
-import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.jface.preference.IPreferencePage;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -22,6 +20,7 @@ import org.eclipse.jface.preference.PreferenceNode;
 import org.eclipse.jface.preference.PreferencePage;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.fipro.e4.service.preferences.impl.PreferenceManagerContextFunction;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.service.log.Logger;
 import org.osgi.service.log.LoggerFactory;
@@ -31,16 +30,24 @@ import org.osgi.service.log.LoggerFactory;
  * {@link PreferenceNode#createPage()} to support {@link IPreferencePage}
  * creation for contributed pages from other bundles. Otherwise the page
  * instance creation will fail because of ClassNotFoundExceptions.
+ * <p>
+ * The page can be specified by class name together with the contributing
+ * {@link Bundle}. In that case the page class is loaded in
+ * {@link #createPage()}, so neither the class is loaded nor the bundle is
+ * activated before the node is opened.
+ * </p>
  */
 public class ContributedPreferenceNode extends PreferenceNode {
 
 	private final String path;
 	private final String nodeQualifier;
-	private final Class<? extends IPreferencePage> pageClass;
+	private final String pageClassName;
+	private Class<? extends IPreferencePage> pageClass;
+	private Bundle bundle;
 	
 	private IPreferenceStore store;
 	
-	private IEclipseContext context;
+	private boolean contextAcquired;
 	private Logger logger;
 
 	/**
@@ -73,18 +80,65 @@ public class ContributedPreferenceNode extends PreferenceNode {
 
 		super(id, label, imageDescriptor, pageClass.getName());
 		this.path = path;
+		this.pageClassName = pageClass.getName();
 		this.pageClass = pageClass;
 
 		this.nodeQualifier = (nodeQualifier != null) 
 				? nodeQualifier 
-				: FrameworkUtil.getBundle(pageClass).getSymbolicName();
+				: getBundle().getSymbolicName();
+	}
+
+	/**
+	 * Create a new ContributedPreferenceNode whose page class is loaded from
+	 * the given bundle when the page is created.
+	 * 
+	 * @param id
+	 *            the node id
+	 * @param label
+	 *            the label used to display the node in the preference dialog's
+	 *            tree
+	 * @param imageDescriptor
+	 *            the image displayed left of the label in the preference
+	 *            dialog's tree, or null if none
+	 * @param pageClassName
+	 *            the fully qualified name of the preference page
+	 *            implementation, this class must implement
+	 *            {@link IPreferencePage}
+	 * @param bundle
+	 *            the bundle that is used to load the page class
+	 * @param path
+	 *            the path of the node to which the contributed node should be
+	 *            added to
+	 * @param nodeQualifier
+	 *            the qualifier used to look up the preference node, if
+	 *            <code>null</code> the symbolic name of the bundle is used
+	 */
+	public ContributedPreferenceNode(
+			String id, 
+			String label, 
+			ImageDescriptor imageDescriptor,
+			String pageClassName,
+			Bundle bundle,
+			String path, 
+			String nodeQualifier) {
+
+		super(id, label, imageDescriptor, pageClassName);
+		this.path = path;
+		this.pageClassName = pageClassName;
+		this.bundle = bundle;
+
+		this.nodeQualifier = (nodeQualifier != null) 
+				? nodeQualifier 
+				: bundle.getSymbolicName();
 	}
 
 	@Override
 	public void createPage() {
-		// create the page via DI using the OSGi service context
+		// create the page via the cached factory of the page class, only pages
+		// without injection points skip DI, the others are still created via
+		// ContextInjectionFactory using the OSGi service context
 		try {
-			IPreferencePage page = ContextInjectionFactory.make(this.pageClass, getContext());
+			IPreferencePage page = PreferencePageFactory.forClass(getPageClass()).create(this::getContext);
 			setPage(page);
 			
 			if (getLabelImage() != null) {
@@ -96,32 +150,62 @@ public class ContributedPreferenceNode extends PreferenceNode {
 		}
 		catch (Exception e) {
 			if (getLogger() != null) {
-				getLogger().error("Error on creating instance of {}", this.pageClass.getName(), e);
+				getLogger().error("Error on creating instance of {}", this.pageClassName, e);
 			}
 		}
 	}
 
 	/**
 	 * 
-	 * @return The {@link IEclipseContext} that can be used to lookup OSGi services.
+	 * @return The page class, loaded from the contributing bundle on first
+	 *         access if the node was created with the page class name.
+	 * @throws ClassNotFoundException
+	 *             if the page class can not be loaded from the bundle
+	 */
+	private synchronized Class<? extends IPreferencePage> getPageClass() throws ClassNotFoundException {
+		if (this.pageClass == null) {
+			this.pageClass = this.bundle.loadClass(this.pageClassName).asSubclass(IPreferencePage.class);
+		}
+		return this.pageClass;
+	}
+
+	/**
+	 * 
+	 * @return The {@link Bundle} that contributes the page class.
+	 */
+	private synchronized Bundle getBundle() {
+		if (this.bundle == null) {
+			this.bundle = FrameworkUtil.getBundle(this.pageClass);
+		}
+		return this.bundle;
+	}
+
+	/**
+	 * 
+	 * @return The {@link IEclipseContext} that can be used to lookup OSGi
+	 *         services, shared by all nodes of the contributing bundle.
 	 */
 	private synchronized IEclipseContext getContext() {
-		if (this.context == null) {
-			this.context = EclipseContextFactory.getServiceContext(
-					FrameworkUtil.getBundle(this.pageClass).getBundleContext());
+		Bundle contextBundle = getBundle();
+		if (!this.contextAcquired) {
+			BundleServiceContexts.acquire(contextBundle);
+			this.contextAcquired = true;
 		}
-		return this.context;
+		return BundleServiceContexts.get(contextBundle);
 	}
 	
 	/**
 	 * 
 	 * @return The {@link Logger} named for this class or <code>null</code> if no
-	 *         {@link LoggerFactory} is available.
+	 *         {@link LoggerFactory} is available, e.g. because the contributing
+	 *         bundle is not active.
 	 */
 	private Logger getLogger() {
-		if (this.logger == null) {
+		if (this.logger == null && getBundle().getBundleContext() != null) {
 			LoggerFactory factory = getContext().get(LoggerFactory.class);
-			this.logger = factory.getLogger(getClass());
+			if (factory != null) {
+				this.logger = factory.getLogger(getClass());
+			}
 		}
 		return this.logger;
 	}
@@ -133,6 +217,14 @@ public class ContributedPreferenceNode extends PreferenceNode {
 	public String getPath() {
 		return path;
 	}
+
+	/**
+	 * @return the path of this node inside the preference node tree, which is
+	 *         the path of the parent node followed by the id of this node
+	 */
+	public String getFullPath() {
+		return (path == null) ? getId() : path + '.' + getId();
+	}
 	
 	/**
 	 * @return the qualifier used to look up the preference node
@@ -155,4 +247,25 @@ public class ContributedPreferenceNode extends PreferenceNode {
 		this.store = store;
 	}
 
+	/**
+	 * Dispose the created {@link IPreferencePage} and release the shared OSGi
+	 * service context and the {@link IPreferenceStore}. This method will be
+	 * called by the {@link PreferenceManagerContextFunction} when the
+	 * {@link PreferenceNodeContribution} is removed from it, so the page class
+	 * and its bundle are not kept reachable.
+	 */
+	public synchronized void dispose() {
+		disposeResources();
+		if (this.contextAcquired) {
+			BundleServiceContexts.release(this.bundle);
+			this.contextAcquired = false;
+		}
+		this.logger = null;
+		this.store = null;
+		if (this.bundle != null) {
+			// the page class can be loaded again via the bundle
+			this.pageClass = null;
+		}
+	}
+
 }
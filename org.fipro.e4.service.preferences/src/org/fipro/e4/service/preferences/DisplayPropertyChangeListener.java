@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * {@link IPropertyChangeListener} that delivers the events to a delegate on
+ * the UI thread of a {@link Display}. Intended to wrap listeners that touch
+ * SWT widgets, if the events are fired on a background thread, e.g. because
+ * the {@link ScopedPreferenceStore} is configured with a listener executor.
+ *
+ * <pre>
+ * store.addPropertyChangeListener(new DisplayPropertyChangeListener(display, event -> {
+ *     label.setText(event.getNewValue().toString());
+ * }));
+ * </pre>
+ *
+ * <p>
+ * Events fired on the UI thread are delivered directly, events fired on other
+ * threads are delivered via {@link Display#asyncExec(Runnable)}. As long as
+ * events delivered via {@link Display#asyncExec(Runnable)} are pending, events
+ * fired on the UI thread are delivered that way as well, so they do not
+ * overtake the earlier events. Events are dropped once the {@link Display} is
+ * disposed.
+ * </p>
+ */
+public class DisplayPropertyChangeListener implements IPropertyChangeListener {
+
+	private final Display display;
+	private final IPropertyChangeListener delegate;
+
+	/**
+	 * The number of events passed to {@link Display#asyncExec(Runnable)} that
+	 * are not delivered yet.
+	 */
+	private final AtomicInteger pendingEvents = new AtomicInteger();
+
+	/**
+	 * Create a new DisplayPropertyChangeListener.
+	 * 
+	 * @param display
+	 *            the {@link Display} on whose UI thread the events should be
+	 *            delivered
+	 * @param delegate
+	 *            the listener to notify on the UI thread
+	 */
+	public DisplayPropertyChangeListener(Display display, IPropertyChangeListener delegate) {
+		this.display = display;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent event) {
+		if (this.display.isDisposed()) {
+			return;
+		}
+		if (this.display.getThread() == Thread.currentThread() && this.pendingEvents.get() == 0) {
+			this.delegate.propertyChange(event);
+			return;
+		}
+		this.pendingEvents.incrementAndGet();
+		try {
+			this.display.asyncExec(() -> {
+				try {
+					this.delegate.propertyChange(event);
+				} finally {
+					this.pendingEvents.decrementAndGet();
+				}
+			});
+		} catch (SWTException e) {
+			this.pendingEvents.decrementAndGet();
+			// the display was disposed concurrently, drop the event
+			if (e.code != SWT.ERROR_DEVICE_DISPOSED) {
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * @return the listener that is notified on the UI thread
+	 */
+	public IPropertyChangeListener getDelegate() {
+		return this.delegate;
+	}
+}
@@ -13,6 +13,8 @@
  *******************************************************************************/
 package org.fipro.e4.service.preferences;
 
+import org.eclipse.core.runtime.preferences.IScopeContext;
+import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.jface.preference.IPreferenceStore;
 
 /**
@@ -22,11 +24,61 @@ import org.eclipse.jface.preference.IPreferenceStore;
 public interface IPreferenceStoreFactoryService {
 
 	/**
-	 * Return the {@link IPreferenceStore} for the given qualifier.
+	 * Return the {@link IPreferenceStore} for the given qualifier in the
+	 * instance scope.
 	 * 
 	 * @param qualifier
 	 *            the qualifier to look up the preference node
 	 * @return the {@link IPreferenceStore} for the given qualifier
 	 */
 	public IPreferenceStore getPreferenceStoreInstance(final String qualifier);
+
+	/**
+	 * Return the {@link IPreferenceStore} for the given qualifier in the given
+	 * scope. If search contexts are given, values are looked up in the nodes of
+	 * these contexts in the given order instead of only in the given scope, so
+	 * the scope typically is part of the search contexts. The store is shared
+	 * with all callers that request the same scope, qualifier and search
+	 * contexts, so the search contexts of the returned store must not be
+	 * changed.
+	 * <p>
+	 * The default implementation is provided for implementations of a previous
+	 * version of this interface. It delegates to
+	 * {@link #getPreferenceStoreInstance(String)} for the instance scope
+	 * without search contexts, and otherwise creates a new store that is not
+	 * shared.
+	 * </p>
+	 * 
+	 * @param scope
+	 *            the scope to store the values to
+	 * @param qualifier
+	 *            the qualifier to look up the preference node
+	 * @param searchContexts
+	 *            the optional contexts to search for values
+	 * @return the {@link IPreferenceStore} for the given scope, qualifier and
+	 *         search contexts
+	 */
+	public default IPreferenceStore getPreferenceStoreInstance(final IScopeContext scope, final String qualifier,
+			final IScopeContext... searchContexts) {
+		boolean searchContextsSet = searchContexts != null && searchContexts.length > 0;
+		if (!searchContextsSet && InstanceScope.INSTANCE.equals(scope)) {
+			return getPreferenceStoreInstance(qualifier);
+		}
+		ScopedPreferenceStore store = new ScopedPreferenceStore(scope, qualifier);
+		if (searchContextsSet) {
+			store.setSearchContexts(searchContexts);
+		}
+		return store;
+	}
+
+	/**
+	 * Return the statistics of the cache of created {@link IPreferenceStore}
+	 * instances. The default implementation returns empty statistics for
+	 * implementations without a cache.
+	 * 
+	 * @return the current cache statistics
+	 */
+	public default PreferenceStoreCacheStatistics getCacheStatistics() {
+		return new PreferenceStoreCacheStatistics(0, 0, 0, 0, 0);
+	}
 }
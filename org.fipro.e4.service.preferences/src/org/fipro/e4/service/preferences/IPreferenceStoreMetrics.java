@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+import java.util.Map;
+
+import javax.management.MXBean;
+
+/**
+ * Service that provides the metrics of the {@link ScopedPreferenceStore}s
+ * created by the {@link IPreferenceStoreFactoryService}. The service is also
+ * registered as MXBean in the platform MBean server with the object name
+ * <code>org.fipro.e4.service.preferences:type=PreferenceStoreMetrics</code>.
+ * <p>
+ * The counts are collected per qualifier. The durations of listener
+ * notifications and flushes are collected in histograms whose buckets are
+ * described by {@link #getHistogramBucketBounds()}.
+ * </p>
+ */
+@MXBean
+public interface IPreferenceStoreMetrics {
+
+	/**
+	 * @return <code>true</code> if metrics are collected
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Enable or disable the collection of metrics.
+	 *
+	 * @param enabled
+	 *            <code>true</code> to collect metrics
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Reset all collected metrics.
+	 */
+	void reset();
+
+	/**
+	 * @return the number of values read per qualifier
+	 */
+	Map<String, Long> getReadCounts();
+
+	/**
+	 * @return the number of values read from the value cache per qualifier
+	 */
+	Map<String, Long> getCacheHitCounts();
+
+	/**
+	 * @return the number of values that were not found in the value cache and
+	 *         were looked up in the nodes per qualifier
+	 */
+	Map<String, Long> getCacheMissCounts();
+
+	/**
+	 * @return the ratio of the reads served from the value cache to all reads
+	 *         that consulted the value cache over all qualifiers, between
+	 *         <code>0</code> and <code>1</code>. Reads of stores without value
+	 *         cache are not included.
+	 */
+	double getCacheHitRate();
+
+	/**
+	 * @return the number of values written per qualifier
+	 */
+	Map<String, Long> getWriteCounts();
+
+	/**
+	 * @return the number of listener notifications per qualifier
+	 */
+	Map<String, Long> getListenerNotificationCounts();
+
+	/**
+	 * @return the longest notification in microseconds per listener class
+	 */
+	Map<String, Long> getMaxListenerDurations();
+
+	/**
+	 * @return the number of flushes per qualifier
+	 */
+	Map<String, Long> getFlushCounts();
+
+	/**
+	 * @return the number of failed flushes over all qualifiers
+	 */
+	long getFlushFailureCount();
+
+	/**
+	 * @return the upper bounds of the histogram buckets in microseconds. The
+	 *         histograms have one more bucket for the durations above the last
+	 *         bound.
+	 */
+	long[] getHistogramBucketBounds();
+
+	/**
+	 * @return the histogram of the listener notification durations
+	 */
+	long[] getListenerDurationHistogram();
+
+	/**
+	 * @return the histogram of the flush durations
+	 */
+	long[] getFlushDurationHistogram();
+}
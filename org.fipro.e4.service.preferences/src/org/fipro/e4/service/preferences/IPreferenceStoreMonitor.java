@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+import org.eclipse.jface.util.IPropertyChangeListener;
+
+/**
+ * Hook that is notified about the operations of a
+ * {@link ScopedPreferenceStore}, e.g. to collect metrics. Set via
+ * {@link ScopedPreferenceStore#setMonitor(IPreferenceStoreMonitor)}. The
+ * methods are called from the thread that performs the operation, so they
+ * need to be thread-safe and should return quickly.
+ */
+public interface IPreferenceStoreMonitor {
+
+	/**
+	 * Checked by the store before an operation is measured, so a disabled
+	 * monitor does not cause any measuring overhead.
+	 *
+	 * @return <code>true</code> if the monitor should be notified,
+	 *         <code>false</code> if it is currently disabled
+	 */
+	default boolean isEnabled() {
+		return true;
+	}
+
+	/**
+	 * Called when a value is read via one of the public get methods. Reads
+	 * performed by the store itself, e.g. of the old value in the set methods,
+	 * are not reported.
+	 *
+	 * @param qualifier
+	 *            the qualifier of the store
+	 */
+	void valueRead(String qualifier);
+
+	/**
+	 * Called when a read via one of the public get methods consulted the value
+	 * cache, i.e. if the value cache is enabled or the key is declared in the
+	 * key schema. Not called for reads that go to the nodes directly.
+	 *
+	 * @param qualifier
+	 *            the qualifier of the store
+	 * @param hit
+	 *            <code>true</code> if the value was served from the value
+	 *            cache, <code>false</code> if it was looked up in the nodes
+	 *            and added to the cache
+	 */
+	void valueCacheAccessed(String qualifier, boolean hit);
+
+	/**
+	 * Called when a value was written to the store node.
+	 *
+	 * @param qualifier
+	 *            the qualifier of the store
+	 */
+	void valueWritten(String qualifier);
+
+	/**
+	 * Called after a property change listener was notified.
+	 *
+	 * @param qualifier
+	 *            the qualifier of the store
+	 * @param listener
+	 *            the notified listener
+	 * @param durationNanos
+	 *            the time the listener needed to process the event in
+	 *            nanoseconds
+	 */
+	void listenerNotified(String qualifier, IPropertyChangeListener listener, long durationNanos);
+
+	/**
+	 * Called after the store node was flushed to the backing store.
+	 *
+	 * @param qualifier
+	 *            the qualifier of the store
+	 * @param durationNanos
+	 *            the duration of the flush in nanoseconds
+	 * @param success
+	 *            <code>false</code> if the flush failed
+	 */
+	void storeFlushed(String qualifier, long durationNanos, boolean success);
+}
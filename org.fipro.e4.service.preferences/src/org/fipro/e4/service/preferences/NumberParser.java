@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+/**
+ * Helper to parse numeric preference values without using a
+ * {@link NumberFormatException} as control flow. The values are checked
+ * against the format accepted by the JDK parse methods first, so the parse
+ * methods are only called with values that can be parsed. Only ASCII digits
+ * are accepted, as the floating point parse methods do not accept other
+ * Unicode digits, and the preferences are written with ASCII digits anyway.
+ */
+final class NumberParser {
+
+	private NumberParser() {
+		// private default constructor for helper class
+	}
+
+	/**
+	 * @param value    the value to parse
+	 * @param fallback the value to return if the value is <code>null</code> or
+	 *                 malformed
+	 * @return the parsed value or the fallback
+	 * @see Integer#parseInt(String)
+	 */
+	static int parseInt(String value, int fallback) {
+		return isInt(value) ? Integer.parseInt(value) : fallback;
+	}
+
+	/**
+	 * @param value    the value to parse
+	 * @param fallback the value to return if the value is <code>null</code> or
+	 *                 malformed
+	 * @return the parsed value or the fallback
+	 * @see Long#parseLong(String)
+	 */
+	static long parseLong(String value, long fallback) {
+		return isLong(value) ? Long.parseLong(value) : fallback;
+	}
+
+	/**
+	 * @param value    the value to parse
+	 * @param fallback the value to return if the value is <code>null</code> or
+	 *                 malformed
+	 * @return the parsed value or the fallback
+	 * @see Float#parseFloat(String)
+	 */
+	static float parseFloat(String value, float fallback) {
+		return isDecimal(value) ? Float.parseFloat(value) : fallback;
+	}
+
+	/**
+	 * @param value    the value to parse
+	 * @param fallback the value to return if the value is <code>null</code> or
+	 *                 malformed
+	 * @return the parsed value or the fallback
+	 * @see Double#parseDouble(String)
+	 */
+	static double parseDouble(String value, double fallback) {
+		return isDecimal(value) ? Double.parseDouble(value) : fallback;
+	}
+
+	/**
+	 * @param value the value to check
+	 * @return <code>true</code> if the value is a decimal integer of ASCII
+	 *         digits that {@link Integer#parseInt(String)} accepts
+	 */
+	static boolean isInt(String value) {
+		return isIntegral(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param value the value to check
+	 * @return <code>true</code> if the value is a decimal integer of ASCII
+	 *         digits that {@link Long#parseLong(String)} accepts
+	 */
+	static boolean isLong(String value) {
+		return isIntegral(value, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Check if the given value is a decimal integer in the given range. Uses
+	 * the same algorithm as the JDK and accumulates negatively to be able to
+	 * detect an overflow at the minimum value.
+	 */
+	private static boolean isIntegral(String value, long min, long max) {
+		if (value == null || value.isEmpty()) {
+			return false;
+		}
+		int length = value.length();
+		int i = 0;
+		long limit = -max;
+		char first = value.charAt(0);
+		if (first == '-' || first == '+') {
+			if (length == 1) {
+				return false;
+			}
+			if (first == '-') {
+				limit = min;
+			}
+			i++;
+		}
+		long multmin = limit / 10;
+		long result = 0;
+		for (; i < length; i++) {
+			int digit = digit(value.charAt(i), 10);
+			if (digit < 0 || result < multmin) {
+				return false;
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				return false;
+			}
+			result -= digit;
+		}
+		return true;
+	}
+
+	/**
+	 * @param value the value to check
+	 * @return <code>true</code> if {@link Double#parseDouble(String)} and
+	 *         {@link Float#parseFloat(String)} accept the value
+	 */
+	static boolean isDecimal(String value) {
+		if (value == null) {
+			return false;
+		}
+		String s = value.trim();
+		int length = s.length();
+		int i = 0;
+		if (i < length && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+			i++;
+		}
+		if (s.startsWith("NaN", i)) { //$NON-NLS-1$
+			return i + 3 == length;
+		}
+		if (s.startsWith("Infinity", i)) { //$NON-NLS-1$
+			return i + 8 == length;
+		}
+		boolean hex = i + 1 < length && s.charAt(i) == '0' && (s.charAt(i + 1) == 'x' || s.charAt(i + 1) == 'X');
+		int radix = 10;
+		if (hex) {
+			radix = 16;
+			i += 2;
+		}
+
+		// mantissa
+		int digits = 0;
+		while (i < length && digit(s.charAt(i), radix) >= 0) {
+			i++;
+			digits++;
+		}
+		if (i < length && s.charAt(i) == '.') {
+			i++;
+			while (i < length && digit(s.charAt(i), radix) >= 0) {
+				i++;
+				digits++;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+
+		// exponent, mandatory for hexadecimal values
+		char exponent = hex ? 'p' : 'e';
+		if (i < length && Character.toLowerCase(s.charAt(i)) == exponent) {
+			i++;
+			if (i < length && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+				i++;
+			}
+			int exponentDigits = 0;
+			while (i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+				i++;
+				exponentDigits++;
+			}
+			if (exponentDigits == 0) {
+				return false;
+			}
+		} else if (hex) {
+			return false;
+		}
+
+		// optional type suffix
+		if (i < length) {
+			char suffix = s.charAt(i);
+			if (suffix == 'f' || suffix == 'F' || suffix == 'd' || suffix == 'D') {
+				i++;
+			}
+		}
+		return i == length;
+	}
+
+	/**
+	 * Like {@link Character#digit(char, int)}, but only for ASCII characters.
+	 *
+	 * @param c     the character to convert
+	 * @param radix the radix, either 10 or 16
+	 * @return the value of the digit or <code>-1</code> if the character is not
+	 *         an ASCII digit of the given radix
+	 */
+	private static int digit(char c, int radix) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if (radix == 16) {
+			if (c >= 'a' && c <= 'f') {
+				return c - 'a' + 10;
+			}
+			if (c >= 'A' && c <= 'F') {
+				return c - 'A' + 10;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+/**
+ * Declaration of a single preference key in a {@link PreferenceKeySchema}.
+ * Describes the type of the value, its default and for numeric types the
+ * allowed range.
+ */
+public final class PreferenceKey {
+
+	/**
+	 * The supported value types.
+	 */
+	public enum Type {
+		BOOLEAN, INT, LONG, FLOAT, DOUBLE, STRING
+	}
+
+	private final String name;
+	private final Type type;
+	private final Object defaultValue;
+	private final Number min;
+	private final Number max;
+
+	/**
+	 * @param name         the key
+	 * @param type         the type of the value
+	 * @param defaultValue the default value, needs to match the type
+	 * @param min          the minimum allowed value for numeric types, or
+	 *                     <code>null</code>
+	 * @param max          the maximum allowed value for numeric types, or
+	 *                     <code>null</code>
+	 */
+	PreferenceKey(String name, Type type, Object defaultValue, Number min, Number max) {
+		this.name = name;
+		this.type = type;
+		this.defaultValue = defaultValue;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * @return the key
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the type of the value
+	 */
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 * @return the default value, the boxed type matches {@link #getType()}
+	 */
+	public Object getDefaultValue() {
+		return this.defaultValue;
+	}
+
+	/**
+	 * @return the minimum allowed value, or <code>null</code> if there is no
+	 *         lower bound
+	 */
+	public Number getMin() {
+		return this.min;
+	}
+
+	/**
+	 * @return the maximum allowed value, or <code>null</code> if there is no
+	 *         upper bound
+	 */
+	public Number getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Parse the given stored value to the type of this key. Malformed values
+	 * and values out of range are replaced by the default value. No exception
+	 * is created while parsing.
+	 * 
+	 * @param value the stored value, can be <code>null</code>
+	 * @return the parsed value, or the default value if the value is
+	 *         <code>null</code> or not valid
+	 */
+	public Object parse(String value) {
+		Object parsed = parseValue(value);
+		return (parsed != null && isInRange(parsed)) ? parsed : this.defaultValue;
+	}
+
+	/**
+	 * @param value the value to check
+	 * @return <code>true</code> if the given string can be parsed to the type
+	 *         of this key and is in the allowed range
+	 */
+	public boolean isValid(String value) {
+		Object parsed = parseValue(value);
+		return parsed != null && isInRange(parsed);
+	}
+
+	/**
+	 * @param value the value to check
+	 * @return <code>true</code> if the given value matches the type of this key
+	 *         and is in the allowed range
+	 */
+	public boolean isValid(Object value) {
+		if (value instanceof String) {
+			return isValid((String) value);
+		}
+		return value != null
+				&& value.getClass() == this.defaultValue.getClass()
+				&& isInRange(value);
+	}
+
+	private Object parseValue(String value) {
+		if (value == null) {
+			return null;
+		}
+		switch (this.type) {
+			case BOOLEAN:
+				if ("true".equalsIgnoreCase(value)) { //$NON-NLS-1$
+					return Boolean.TRUE;
+				}
+				return "false".equalsIgnoreCase(value) ? Boolean.FALSE : null; //$NON-NLS-1$
+			case INT:
+				return NumberParser.isInt(value) ? Integer.valueOf(value) : null;
+			case LONG:
+				return NumberParser.isLong(value) ? Long.valueOf(value) : null;
+			case FLOAT:
+				return NumberParser.isDecimal(value) ? Float.valueOf(value) : null;
+			case DOUBLE:
+				return NumberParser.isDecimal(value) ? Double.valueOf(value) : null;
+			default:
+				return value;
+		}
+	}
+
+	private boolean isInRange(Object value) {
+		if (!(value instanceof Number)) {
+			return true;
+		}
+		double number = ((Number) value).doubleValue();
+		if (this.min != null && number < this.min.doubleValue()) {
+			return false;
+		}
+		return this.max == null || number <= this.max.doubleValue();
+	}
+
+	@Override
+	public String toString() {
+		return this.name + " (" + this.type + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
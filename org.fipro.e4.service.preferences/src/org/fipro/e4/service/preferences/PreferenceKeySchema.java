@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.fipro.e4.service.preferences.PreferenceKey.Type;
+
+/**
+ * Declares the keys of a {@link ScopedPreferenceStore} with their type,
+ * default value and allowed range. If a schema is set via
+ * {@link ScopedPreferenceStore#setKeySchema(PreferenceKeySchema)}, the values
+ * of the declared keys are validated on write, and they are parsed only once
+ * when they are loaded or changed. Malformed stored values are replaced by the
+ * declared default value. A schema is immutable and created via a
+ * {@link Builder}.
+ * 
+ * <pre>
+ * PreferenceKeySchema schema = PreferenceKeySchema.builder()
+ * 		.addIntKey("rowHeight", 20, 10, 100)
+ * 		.addBooleanKey("showGrid", true)
+ * 		.build();
+ * store.setKeySchema(schema);
+ * </pre>
+ */
+public final class PreferenceKeySchema {
+
+	private final Map<String, PreferenceKey> keys;
+
+	private PreferenceKeySchema(Map<String, PreferenceKey> keys) {
+		this.keys = Collections.unmodifiableMap(new LinkedHashMap<>(keys));
+	}
+
+	/**
+	 * @return a new {@link Builder} to declare the keys of a schema
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @param name the key
+	 * @return the declaration of the given key, or <code>null</code> if the key
+	 *         is not declared in this schema
+	 */
+	public PreferenceKey getKey(String name) {
+		return name != null ? this.keys.get(name) : null;
+	}
+
+	/**
+	 * @return all declared keys in declaration order
+	 */
+	public Collection<PreferenceKey> getKeys() {
+		return this.keys.values();
+	}
+
+	/**
+	 * Builder to declare the keys of a {@link PreferenceKeySchema}. A builder is
+	 * not thread-safe, the created schema is.
+	 */
+	public static final class Builder {
+
+		private final Map<String, PreferenceKey> keys = new LinkedHashMap<>();
+
+		private Builder() {
+			// created via PreferenceKeySchema#builder()
+		}
+
+		/**
+		 * Declare a boolean key.
+		 * 
+		 * @param name         the key
+		 * @param defaultValue the default value
+		 * @return this builder
+		 */
+		public Builder addBooleanKey(String name, boolean defaultValue) {
+			return addKey(new PreferenceKey(name, Type.BOOLEAN, defaultValue, null, null));
+		}
+
+		/**
+		 * Declare an int key without range restriction.
+		 * 
+		 * @param name         the key
+		 * @param defaultValue the default value
+		 * @return this builder
+		 */
+		public Builder addIntKey(String name, int defaultValue) {
+			return addKey(new PreferenceKey(name, Type.INT, defaultValue, null, null));
+		}
+
+		/**
+		 * Declare an int key with an allowed range.
+		 * 
+		 * @param name         the key
+		 * @param defaultValue the default value
+		 * @param min          the minimum allowed value
+		 * @param max          the maximum allowed value
+		 * @return this builder
+		 */
+		public Builder addIntKey(String name, int defaultValue, int min, int max) {
+			return addKey(new PreferenceKey(name, Type.INT, defaultValue, min, max));
+		}
+
+		/**
+		 * Declare a long key without range restriction.
+		 * 
+		 * @param name         the key
+		 * @param defaultValue the default value
+		 * @return this builder
+		 */
+		public Builder addLongKey(String name, long defaultValue) {
+			return addKey(new PreferenceKey(name, Type.LONG, defaultValue, null, null));
+		}
+
+		/**
+		 * Declare a long key with an allowed range.
+		 * 
+		 * @param name         the key
+		 * @param defaultValue the default value
+		 * @param min          the minimum allowed value
+		 * @param max          the maximum allowed value
+		 * @return this builder
+		 */
+		public Builder addLongKey(String name, long defaultValue, long min, long max) {
+			return addKey(new PreferenceKey(name, Type.LONG, defaultValue, min, max));
+		}
+
+		/**
+		 * Declare a float key without range restriction.
+		 * 
+		 * @param name         the key
+		 * @param defaultValue the default value
+		 * @return this builder
+		 */
+		public Builder addFloatKey(String name, float defaultValue) {
+			return addKey(new PreferenceKey(name, Type.FLOAT, defaultValue, null, null));
+		}
+
+		/**
+		 * Declare a float key with an allowed range.
+		 * 
+		 * @param name         the key
+		 * @param defaultValue the default value
+		 * @param min          the minimum allowed value
+		 * @param max          the maximum allowed value
+		 * @return this builder
+		 */
+		public Builder addFloatKey(String name, float defaultValue, float min, float max) {
+			return addKey(new PreferenceKey(name, Type.FLOAT, defaultValue, min, max));
+		}
+
+		/**
+		 * Declare a double key without range restriction.
+		 * 
+		 * @param name         the key
+		 * @param defaultValue the default value
+		 * @return this builder
+		 */
+		public Builder addDoubleKey(String name, double defaultValue) {
+			return addKey(new PreferenceKey(name, Type.DOUBLE, defaultValue, null, null));
+		}
+
+		/**
+		 * Declare a double key with an allowed range.
+		 * 
+		 * @param name         the key
+		 * @param defaultValue the default value
+		 * @param min          the minimum allowed value
+		 * @param max          the maximum allowed value
+		 * @return this builder
+		 */
+		public Builder addDoubleKey(String name, double defaultValue, double min, double max) {
+			return addKey(new PreferenceKey(name, Type.DOUBLE, defaultValue, min, max));
+		}
+
+		/**
+		 * Declare a string key.
+		 * 
+		 * @param name         the key
+		 * @param defaultValue the default value
+		 * @return this builder
+		 */
+		public Builder addStringKey(String name, String defaultValue) {
+			return addKey(new PreferenceKey(name, Type.STRING, defaultValue, null, null));
+		}
+
+		private Builder addKey(PreferenceKey key) {
+			if (key.getName() == null || key.getDefaultValue() == null) {
+				throw new IllegalArgumentException("The name and the default value of a key must not be null"); //$NON-NLS-1$
+			}
+			if (!key.isValid(key.getDefaultValue())) {
+				throw new IllegalArgumentException("The default value of " + key.getName() + " is out of range"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			this.keys.put(key.getName(), key);
+			return this;
+		}
+
+		/**
+		 * @return a new immutable schema with the keys declared until now
+		 */
+		public PreferenceKeySchema build() {
+			return new PreferenceKeySchema(this.keys);
+		}
+	}
+}
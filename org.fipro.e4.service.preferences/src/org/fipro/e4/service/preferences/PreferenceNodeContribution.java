@@ -19,6 +19,7 @@ import java.util.List;
 import org.eclipse.jface.preference.IPreferencePage;
 import org.eclipse.jface.preference.PreferenceDialog;
 import org.eclipse.jface.resource.ImageDescriptor;
+import org.osgi.framework.Bundle;
 
 /**
  * Base class for contributing {@link IPreferencePage}s to a
@@ -50,6 +51,39 @@ import org.eclipse.jface.resource.ImageDescriptor;
  * }
  * </pre>
  * </p>
+ * 
+ * To avoid loading the page classes and activating the contributing bundle on
+ * startup, the page can be specified by class name. The class is then loaded
+ * from the given bundle when the page is opened:
+ * 
+ * <pre>
+ * public class MyPreferenceContribution extends PreferenceNodeContribution {
+ * 
+ * 	public MyPreferenceContribution() {
+ * 		super("myId", "myLabel", null, "org.example.MyPreferencePage",
+ * 				FrameworkUtil.getBundle(MyPreferenceContribution.class), null, null);
+ * 	}
+ * }
+ * </pre>
+ * 
+ * A single node can also be described completely by service properties. The
+ * service object is then never requested, so the contributing bundle is not
+ * activated before the page is opened. The page class is loaded via the
+ * bundle that registers the service. A component description without any
+ * code in the contributing bundle looks like this:
+ * 
+ * <pre>
+ * &lt;scr:component xmlns:scr="http://www.osgi.org/xmlns/scr/v1.3.0" name="org.example.preferences"&gt;
+ *    &lt;property name="preference.node.id" value="myId"/&gt;
+ *    &lt;property name="preference.node.label" value="myLabel"/&gt;
+ *    &lt;property name="preference.node.page" value="org.example.MyPreferencePage"/&gt;
+ *    &lt;service&gt;
+ *       &lt;provide interface="org.fipro.e4.service.preferences.PreferenceNodeContribution"/&gt;
+ *    &lt;/service&gt;
+ *    &lt;implementation class="org.fipro.e4.service.preferences.PreferenceNodeContribution"/&gt;
+ * &lt;/scr:component&gt;
+ * </pre>
+ * </p>
  * <p>
  * <b>Note:</b> There are also several convenience constructors and methods for
  * avoiding <code>null</code> parameters.
@@ -57,8 +91,49 @@ import org.eclipse.jface.resource.ImageDescriptor;
  */
 public class PreferenceNodeContribution {
 
+	/**
+	 * Service property for the id of a node that is described by service
+	 * properties.
+	 */
+	public static final String NODE_ID = "preference.node.id";
+
+	/**
+	 * Service property for the label of a node that is described by service
+	 * properties. If not set, the id is used.
+	 */
+	public static final String NODE_LABEL = "preference.node.label";
+
+	/**
+	 * Service property for the fully qualified class name of the page of a
+	 * node that is described by service properties.
+	 */
+	public static final String NODE_PAGE = "preference.node.page";
+
+	/**
+	 * Service property for the path of the parent of a node that is described
+	 * by service properties.
+	 */
+	public static final String NODE_PATH = "preference.node.path";
+
+	/**
+	 * Service property for the qualifier of a node that is described by
+	 * service properties. If not set, the symbolic name of the contributing
+	 * bundle is used. Contributions that add their nodes programmatically can
+	 * set it to get the store of their qualifier warmed up on startup.
+	 */
+	public static final String NODE_QUALIFIER = "preference.node.qualifier";
+
 	private final List<ContributedPreferenceNode> nodes = new ArrayList<>();
 
+	/**
+	 * Creates a {@link PreferenceNodeContribution} without nodes. Used as
+	 * component implementation for nodes that are described by service
+	 * properties, and by subclasses that add their nodes via
+	 * <code>addPreferenceNode()</code>.
+	 */
+	public PreferenceNodeContribution() {
+	}
+
 	/**
 	 * Creates a {@link PreferenceNodeContribution} with the given settings.
 	 * Will set the imageDescriptor, the path and the nodeQualifier setting 
@@ -169,6 +244,49 @@ public class PreferenceNodeContribution {
 				nodeQualifier));
 	}
 
+	/**
+	 * Creates a {@link PreferenceNodeContribution} with the given settings. The
+	 * page class is loaded from the given bundle when the page is created.
+	 * 
+	 * @param id
+	 *            the node id
+	 * @param label
+	 *            the label used to display the node in the preference dialog's
+	 *            tree
+	 * @param imageDescriptor
+	 *            the image displayed left of the label in the preference
+	 *            dialog's tree, or null if none
+	 * @param pageClassName
+	 *            the fully qualified name of the preference page
+	 *            implementation, this class must implement
+	 *            {@link IPreferencePage}
+	 * @param bundle
+	 *            the bundle that is used to load the page class
+	 * @param path
+	 *            the path of the node to which the contributed node should be
+	 *            added to, which is the dot separated list of parent ids 
+	 * @param nodeQualifier
+	 *            the qualifier used to look up the preference node
+	 */
+	public PreferenceNodeContribution(
+			String id, 
+			String label, 
+			ImageDescriptor imageDescriptor,
+			String pageClassName, 
+			Bundle bundle,
+			String path,
+			String nodeQualifier) {
+		
+		this.nodes.add(new ContributedPreferenceNode(
+				id, 
+				label, 
+				imageDescriptor, 
+				pageClassName, 
+				bundle,
+				path, 
+				nodeQualifier));
+	}
+
 	/**
 	 * 
 	 * @return The list of preference nodes that are contributed by this
@@ -287,4 +405,47 @@ public class PreferenceNodeContribution {
 				path, 
 				nodeQualifier));
 	}
+
+	/**
+	 * Adds a {@link PreferenceNodeContribution} with the given settings. The
+	 * page class is loaded from the given bundle when the page is created.
+	 * 
+	 * @param id
+	 *            the node id
+	 * @param label
+	 *            the label used to display the node in the preference dialog's
+	 *            tree
+	 * @param imageDescriptor
+	 *            the image displayed left of the label in the preference
+	 *            dialog's tree, or null if none
+	 * @param pageClassName
+	 *            the fully qualified name of the preference page
+	 *            implementation, this class must implement
+	 *            {@link IPreferencePage}
+	 * @param bundle
+	 *            the bundle that is used to load the page class
+	 * @param path
+	 *            the path of the node to which the contributed node should be
+	 *            added to, which is the dot separated list of parent ids 
+	 * @param nodeQualifier
+	 *            the qualifier used to look up the preference node
+	 */
+	public void addPreferenceNode(
+			String id, 
+			String label, 
+			ImageDescriptor imageDescriptor,
+			String pageClassName, 
+			Bundle bundle,
+			String path,
+			String nodeQualifier) {
+		
+		this.nodes.add(new ContributedPreferenceNode(
+				id, 
+				label, 
+				imageDescriptor, 
+				pageClassName, 
+				bundle,
+				path, 
+				nodeQualifier));
+	}
 }
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.util.function.Supplier;
+
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.jface.preference.IPreferencePage;
+
+/**
+ * Factory to create the {@link IPreferencePage} instances of
+ * {@link ContributedPreferenceNode}s. A page class is analyzed once on the
+ * first request of its factory:
+ * <ul>
+ * <li>pages without injection points are created via a cached
+ * {@link MethodHandle} of the public no-arg constructor, without the need of
+ * an OSGi service context</li>
+ * <li>pages that declare injection points are still created via
+ * {@link ContextInjectionFactory#make(Class, IEclipseContext)} on every
+ * request, this factory only caches the decision, not the injection
+ * metadata</li>
+ * </ul>
+ * The factories are cached per page class via {@link ClassValue}, so the
+ * cache does not prevent the page classes from being unloaded.
+ */
+abstract class PreferencePageFactory {
+
+	/**
+	 * Names of the annotations that mark an injection point or a lifecycle
+	 * method that is handled by the dependency injection. The annotations are
+	 * compared by name, so the javax variants are detected without a
+	 * dependency to them.
+	 */
+	private static final String[] INJECTION_ANNOTATIONS = {
+			"jakarta.inject.Inject", //$NON-NLS-1$
+			"javax.inject.Inject", //$NON-NLS-1$
+			"jakarta.annotation.PostConstruct", //$NON-NLS-1$
+			"javax.annotation.PostConstruct", //$NON-NLS-1$
+			"jakarta.annotation.PreDestroy", //$NON-NLS-1$
+			"javax.annotation.PreDestroy" //$NON-NLS-1$
+	};
+
+	private static final ClassValue<PreferencePageFactory> FACTORIES = new ClassValue<PreferencePageFactory>() {
+		@Override
+		protected PreferencePageFactory computeValue(Class<?> type) {
+			return createFactory(type.asSubclass(IPreferencePage.class));
+		}
+	};
+
+	/**
+	 * @param pageClass
+	 *            the page class to create instances of
+	 * @return the cached factory for the given page class
+	 */
+	static PreferencePageFactory forClass(Class<? extends IPreferencePage> pageClass) {
+		return FACTORIES.get(pageClass);
+	}
+
+	/**
+	 * Create a new page instance.
+	 *
+	 * @param context
+	 *            supplier of the {@link IEclipseContext} that is used to
+	 *            inject the page, only requested if the page needs injection
+	 * @return the created page
+	 */
+	abstract IPreferencePage create(Supplier<IEclipseContext> context);
+
+	private static PreferencePageFactory createFactory(Class<? extends IPreferencePage> pageClass) {
+		if (!requiresInjection(pageClass)) {
+			try {
+				MethodHandle constructor = MethodHandles.publicLookup()
+						.findConstructor(pageClass, MethodType.methodType(void.class))
+						.asType(MethodType.methodType(IPreferencePage.class));
+				return new ConstructorFactory(constructor);
+			} catch (NoSuchMethodException | IllegalAccessException e) {
+				// no accessible no-arg constructor, let the injection handle it
+			}
+		}
+		return new InjectionFactory(pageClass);
+	}
+
+	private static boolean requiresInjection(Class<?> pageClass) {
+		for (Class<?> type = pageClass; type != null && type != Object.class; type = type.getSuperclass()) {
+			if (hasInjectionAnnotation(type.getDeclaredConstructors())
+					|| hasInjectionAnnotation(type.getDeclaredFields())
+					|| hasInjectionAnnotation(type.getDeclaredMethods())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasInjectionAnnotation(AnnotatedElement[] elements) {
+		for (AnnotatedElement element : elements) {
+			for (Annotation annotation : element.getAnnotations()) {
+				String name = annotation.annotationType().getName();
+				for (String injectionAnnotation : INJECTION_ANNOTATIONS) {
+					if (injectionAnnotation.equals(name)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static final class ConstructorFactory extends PreferencePageFactory {
+
+		private final MethodHandle constructor;
+
+		private ConstructorFactory(MethodHandle constructor) {
+			this.constructor = constructor;
+		}
+
+		@Override
+		IPreferencePage create(Supplier<IEclipseContext> context) {
+			try {
+				return (IPreferencePage) this.constructor.invokeExact();
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private static final class InjectionFactory extends PreferencePageFactory {
+
+		private final Class<? extends IPreferencePage> pageClass;
+
+		private InjectionFactory(Class<? extends IPreferencePage> pageClass) {
+			this.pageClass = pageClass;
+		}
+
+		@Override
+		IPreferencePage create(Supplier<IEclipseContext> context) {
+			return ContextInjectionFactory.make(this.pageClass, context.get());
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+/**
+ * Immutable statistics of the store cache of an
+ * {@link IPreferenceStoreFactoryService}.
+ */
+public final class PreferenceStoreCacheStatistics {
+
+	private final int size;
+	private final int maxSize;
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+
+	/**
+	 * 
+	 * @param size
+	 *            the number of cached stores, including evicted stores that
+	 *            are still referenced and therefore still shared
+	 * @param maxSize
+	 *            the configured maximum number of cached stores, <code>0</code>
+	 *            if the cache is unbounded
+	 * @param hitCount
+	 *            the number of requests served by a cached store
+	 * @param missCount
+	 *            the number of requests that created a new store
+	 * @param evictionCount
+	 *            the number of times the cache dropped its reference to a
+	 *            store because the maximum size was exceeded
+	 */
+	public PreferenceStoreCacheStatistics(int size, int maxSize, long hitCount, long missCount, long evictionCount) {
+		this.size = size;
+		this.maxSize = maxSize;
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+	}
+
+	/**
+	 * @return the number of cached stores, including evicted stores that are
+	 *         still referenced and therefore still shared
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the configured maximum number of cached stores, <code>0</code> if
+	 *         the cache is unbounded
+	 */
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * @return the number of requests served by a cached store
+	 */
+	public long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * @return the number of requests that created a new store
+	 */
+	public long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * @return the number of times the cache dropped its reference to a store
+	 *         because the maximum size was exceeded
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	@Override
+	public String toString() {
+		return "PreferenceStoreCacheStatistics [size=" + this.size //$NON-NLS-1$
+				+ ", maxSize=" + this.maxSize //$NON-NLS-1$
+				+ ", hits=" + this.hitCount //$NON-NLS-1$
+				+ ", misses=" + this.missCount //$NON-NLS-1$
+				+ ", evictions=" + this.evictionCount + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+
+/**
+ * Immutable snapshot of the effective values of a
+ * {@link ScopedPreferenceStore}, created via
+ * {@link ScopedPreferenceStore#snapshot()}. The values are resolved over the
+ * search contexts and the defaults of the store at the time the snapshot was
+ * created. Reading a value from a snapshot does not perform any lookup in the
+ * preference nodes, and the values do not change if the store is modified
+ * afterwards.
+ * <p>
+ * The get methods follow the semantics of the corresponding
+ * {@link IPreferenceStore} methods, i.e. they return the default-default value
+ * of the type if the key does not exist or the value can not be parsed.
+ * </p>
+ */
+public final class PreferenceStoreSnapshot {
+
+	private final long version;
+	private final Map<String, String> values;
+
+	/**
+	 * Create a new snapshot. The given map is not copied and must not be
+	 * modified afterwards.
+	 * 
+	 * @param version
+	 *            the modification count of the store the snapshot was created
+	 *            for
+	 * @param values
+	 *            the effective values mapped by key
+	 */
+	PreferenceStoreSnapshot(long version, Map<String, String> values) {
+		this.version = version;
+		this.values = Collections.unmodifiableMap(values);
+	}
+
+	/**
+	 * @return the version of this snapshot, snapshots of the same store with
+	 *         the same version contain the same values
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * @return the keys contained in this snapshot
+	 */
+	public Set<String> keys() {
+		return this.values.keySet();
+	}
+
+	/**
+	 * @return the effective values of this snapshot mapped by key
+	 */
+	public Map<String, String> asMap() {
+		return this.values;
+	}
+
+	/**
+	 * @param name
+	 *            the key to check
+	 * @return <code>true</code> if the snapshot contains a value for the given
+	 *         key
+	 */
+	public boolean contains(String name) {
+		return name != null && this.values.containsKey(name);
+	}
+
+	/**
+	 * @param name
+	 *            the key of the value
+	 * @return the string value of the given key
+	 * @see IPreferenceStore#getString(String)
+	 */
+	public String getString(String name) {
+		String value = this.values.get(name);
+		return value == null ? IPreferenceStore.STRING_DEFAULT_DEFAULT : value;
+	}
+
+	/**
+	 * @param name
+	 *            the key of the value
+	 * @return the boolean value of the given key
+	 * @see IPreferenceStore#getBoolean(String)
+	 */
+	public boolean getBoolean(String name) {
+		return ScopedPreferenceStore.toBoolean(this.values.get(name));
+	}
+
+	/**
+	 * @param name
+	 *            the key of the value
+	 * @return the int value of the given key
+	 * @see IPreferenceStore#getInt(String)
+	 */
+	public int getInt(String name) {
+		return ScopedPreferenceStore.toInt(this.values.get(name));
+	}
+
+	/**
+	 * @param name
+	 *            the key of the value
+	 * @return the long value of the given key
+	 * @see IPreferenceStore#getLong(String)
+	 */
+	public long getLong(String name) {
+		return ScopedPreferenceStore.toLong(this.values.get(name));
+	}
+
+	/**
+	 * @param name
+	 *            the key of the value
+	 * @return the float value of the given key
+	 * @see IPreferenceStore#getFloat(String)
+	 */
+	public float getFloat(String name) {
+		return ScopedPreferenceStore.toFloat(this.values.get(name));
+	}
+
+	/**
+	 * @param name
+	 *            the key of the value
+	 * @return the double value of the given key
+	 * @see IPreferenceStore#getDouble(String)
+	 */
+	public double getDouble(String name) {
+		return ScopedPreferenceStore.toDouble(this.values.get(name));
+	}
+}
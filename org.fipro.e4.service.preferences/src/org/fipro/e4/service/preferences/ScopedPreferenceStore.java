@@ -0,0 +1,2241 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Yves YANG <yves.yang@soyatec.com> -
+ *     		Initial Fix for Bug 138078 [Preferences] Preferences Store for i18n support
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - removed dependency to org.eclipse.ui
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.eclipse.core.commands.common.EventManager;
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.SafeRunner;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.NodeChangeEvent;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.core.runtime.preferences.IScopeContext;
+import org.eclipse.jface.preference.IPersistentPreferenceStore;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.resource.JFaceResources;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.jface.util.SafeRunnable;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * The ScopedPreferenceStore is an IPreferenceStore that uses the scopes
+ * provided in org.eclipse.core.runtime.preferences.
+ * <p>
+ * A ScopedPreferenceStore does the lookup of a preference based on it's search
+ * scopes and sets the value of the preference based on its store scope.
+ * </p>
+ * <p>
+ * The default scope is always included in the search scopes when searching for
+ * preference values.
+ * </p>
+ * <p>
+ * A ScopedPreferenceStore can be modified concurrently by multiple threads.
+ * Modifications are serialized per key via striped locks, and the suppression
+ * of the preference node events for own modifications is tracked per thread.
+ * Property change events and the dirty handler are fired after the lock of the
+ * key was released, so listeners can modify the store without the risk of a
+ * deadlock. The events of a single thread are delivered in the order of its
+ * writes. If multiple threads write the same key concurrently, their events
+ * can be delivered in a different order than the writes were applied, the old
+ * and new values of every event match the write that fired it.
+ * </p>
+ *
+ * @see org.eclipse.core.runtime.preferences
+ * @since 3.1
+ */
+public class ScopedPreferenceStore extends EventManager implements IPreferenceStore, IPersistentPreferenceStore {
+
+	/**
+	 * The default time in milliseconds that {@link #saveAsync()} waits before the
+	 * node is flushed, so that repeated save requests are coalesced.
+	 */
+	public static final long DEFAULT_SAVE_DELAY = 500;
+
+	/**
+	 * The number of locks used to serialize modifications per key.
+	 */
+	private static final int KEY_LOCK_STRIPES = 16;
+
+	/**
+	 * The storeContext is the context where values will stored with the setValue
+	 * methods. If there are no searchContexts this will be the search context.
+	 * (along with the "default" context)
+	 */
+	private IScopeContext storeContext;
+
+	/**
+	 * The searchContext is the array of contexts that will be used by the get
+	 * methods for searching for values.
+	 */
+	private IScopeContext[] searchContexts;
+
+	/**
+	 * Counter per thread to indicate the property changes caused by this thread
+	 * should not be propagated. The preference node notifies its listeners on the
+	 * modifying thread, so modifications of other threads are not suppressed.
+	 */
+	private final ThreadLocal<int[]> silentRunning = ThreadLocal.withInitial(() -> new int[1]);
+
+	/**
+	 * The locks used to serialize the modifications per key, striped by the hash
+	 * code of the key.
+	 */
+	private final Object[] keyLocks = new Object[KEY_LOCK_STRIPES];
+
+	/**
+	 * The property change listeners that are only interested in a single key,
+	 * mapped by that key.
+	 */
+	private final Map<String, ListenerList<IPropertyChangeListener>> keyListeners = new ConcurrentHashMap<>();
+
+	/**
+	 * The property change listeners that are only interested in keys with a
+	 * specific prefix, mapped by that prefix.
+	 */
+	private final Map<String, ListenerList<IPropertyChangeListener>> prefixListeners = new ConcurrentHashMap<>();
+
+	/**
+	 * The executor used to notify the property change listeners,
+	 * <code>null</code> if the listeners are notified synchronously.
+	 */
+	private volatile Executor listenerExecutor;
+
+	/**
+	 * The queues per listener used to notify the listeners in event order if a
+	 * listener executor is set. The queues are kept when the executor is changed,
+	 * so events that are still queued are delivered before newer events.
+	 */
+	private final Map<IPropertyChangeListener, SerialExecutor> listenerQueues = Collections
+			.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * Boolean value indicating whether {@link #listenerQueues} can contain
+	 * queues. If not and no listener executor is set, the listeners are notified
+	 * without looking up their queue.
+	 */
+	private volatile boolean listenerQueuesInUse;
+
+	/**
+	 * The listener on the IEclipsePreferences. This is used to forward updates to
+	 * the property change listeners on the preference store.
+	 */
+	volatile IEclipsePreferences.IPreferenceChangeListener preferencesListener;
+
+	/**
+	 * The default context is the context where getDefault and setDefault methods
+	 * will search. This context is also used in the search.
+	 */
+	private IScopeContext defaultContext = DefaultScope.INSTANCE;
+
+	/**
+	 * The nodeQualifer is the string used to look up the node in the contexts.
+	 */
+	String nodeQualifier;
+
+	/**
+	 * The defaultQualifier is the string used to look up the default node.
+	 */
+	String defaultQualifier;
+
+	/**
+	 * Boolean value indicating whether or not this store has changes to be saved.
+	 */
+	private final AtomicBoolean dirty = new AtomicBoolean();
+
+	/**
+	 * The handler that is notified when this store becomes dirty.
+	 */
+	private volatile Consumer<? super ScopedPreferenceStore> dirtyHandler;
+
+	/**
+	 * The monitor that is notified about reads, writes, listener notifications
+	 * and flushes, <code>null</code> if the store is not monitored.
+	 */
+	private volatile IPreferenceStoreMonitor monitor;
+
+	/**
+	 * The time in milliseconds that {@link #saveAsync()} waits before the node is
+	 * flushed.
+	 */
+	private volatile long saveDelay = DEFAULT_SAVE_DELAY;
+
+	/**
+	 * The executor used to flush the node in the background, <code>null</code> to
+	 * use the shared default executor.
+	 */
+	private volatile ScheduledExecutorService saveExecutor;
+
+	/**
+	 * The lock to guard the state of a pending asynchronous save.
+	 */
+	private final Object saveLock = new Object();
+
+	/**
+	 * The future returned to all callers of {@link #saveAsync()} until the
+	 * scheduled flush is performed. <code>null</code> if no save is pending.
+	 */
+	private CompletableFuture<Void> pendingSave;
+
+	/**
+	 * The scheduled flush of a pending asynchronous save.
+	 */
+	private ScheduledFuture<?> pendingFlush;
+
+	/**
+	 * The batch of modifications started by the current thread,
+	 * <code>null</code> if no batch is running on the current thread.
+	 */
+	private final ThreadLocal<Batch> batch = new ThreadLocal<>();
+
+	/**
+	 * The listener on the parents of the nodes in the search path. This is used to
+	 * update the resolved nodes if nodes are added or removed.
+	 */
+	private final NodeListener nodeChangeListener = new NodeListener(this);
+
+	/**
+	 * The parent nodes of the search path the node change listener is registered
+	 * on, in addition to the parent of the store node.
+	 */
+	private final Set<IEclipsePreferences> observedParents = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/**
+	 * The resolved nodes of the search path, with the default node as the last
+	 * element. <code>null</code> if the nodes need to be resolved again.
+	 */
+	private volatile IEclipsePreferences[] resolvedNodes;
+
+	/**
+	 * The resolved node of the store context, <code>null</code> if the node needs
+	 * to be resolved again.
+	 */
+	private volatile IEclipsePreferences storeNode;
+
+	/**
+	 * Boolean value indicating whether already parsed values should be cached.
+	 */
+	private volatile boolean valueCacheEnabled;
+
+	/**
+	 * The cache of looked up values, only used if the value cache is enabled.
+	 */
+	private final Map<String, CachedValue> valueCache = new ConcurrentHashMap<>();
+
+	/**
+	 * Boolean value indicating whether the store was disposed and does not track
+	 * the changes in the preference nodes anymore.
+	 */
+	private volatile boolean disposed;
+
+	/**
+	 * The declaration of the keys used to validate written values and to parse
+	 * read values, <code>null</code> if no schema is set.
+	 */
+	private volatile PreferenceKeySchema keySchema;
+
+	/**
+	 * Counter that is increased on every change in the search path while changes
+	 * are tracked. Used as version of the snapshots and to avoid publishing a
+	 * value that was looked up concurrently to a change.
+	 */
+	private final AtomicLong modificationCount = new AtomicLong();
+
+	/**
+	 * Boolean value indicating whether snapshots were requested, which requires
+	 * tracking the changes in the search path.
+	 */
+	private volatile boolean snapshotsEnabled;
+
+	/**
+	 * The last created snapshot, reused as long as nothing changed in the search
+	 * path.
+	 */
+	private volatile PreferenceStoreSnapshot snapshot;
+
+	/**
+	 * Boolean value indicating whether the effective values should be indexed.
+	 */
+	private volatile boolean effectiveValueIndexEnabled;
+
+	/**
+	 * The index of the effective values over the search path, mapped by key.
+	 * <code>null</code> if the index is disabled or currently built.
+	 */
+	private volatile Map<String, String> effectiveValues;
+
+	/**
+	 * The lock to guard the publishing and the updates of the effective value
+	 * index.
+	 */
+	private final Object effectiveValuesLock = new Object();
+
+	/**
+	 * The listener on all IEclipsePreferences of the search path that tracks the
+	 * changes for the value cache, the effective value index and the snapshots.
+	 */
+	private final NodeListener searchPathListener = new NodeListener(this);
+
+	/**
+	 * The nodes the search path listener is currently registered on.
+	 */
+	private IEclipsePreferences[] observedNodes;
+
+	/**
+	 * Create a new instance of the receiver. Store the values in context in the
+	 * node looked up by qualifier. <strong>NOTE:</strong> Any instance of
+	 * ScopedPreferenceStore should call
+	 *
+	 * @param context              the scope to store to
+	 * @param qualifier            the qualifier used to look up the preference node
+	 * @param defaultQualifierPath the qualifier used when looking up the defaults
+	 */
+	public ScopedPreferenceStore(IScopeContext context, String qualifier, String defaultQualifierPath) {
+		this(context, qualifier);
+		this.defaultQualifier = defaultQualifierPath;
+	}
+
+	/**
+	 * Create a new instance of the receiver that looks up the defaults in the
+	 * given default context instead of the {@link DefaultScope}, e.g. to use the
+	 * store with in-memory scopes outside of a running platform.
+	 *
+	 * @param context              the scope to store to
+	 * @param qualifier            the qualifier used to look up the preference node
+	 * @param defaultQualifierPath the qualifier used when looking up the defaults
+	 * @param defaultContext       the scope to look up and store the defaults
+	 */
+	public ScopedPreferenceStore(IScopeContext context, String qualifier, String defaultQualifierPath,
+			IScopeContext defaultContext) {
+		this(context, qualifier, defaultQualifierPath);
+		this.defaultContext = defaultContext;
+	}
+
+	/**
+	 * Create a new instance of the receiver. Store the values in context in the
+	 * node looked up by qualifier.
+	 *
+	 * @param context   the scope to store to
+	 * @param qualifier the qualifer used to look up the preference node
+	 */
+	public ScopedPreferenceStore(IScopeContext context, String qualifier) {
+		for (int i = 0; i < this.keyLocks.length; i++) {
+			this.keyLocks[i] = new Object();
+		}
+		storeContext = context;
+		this.nodeQualifier = qualifier;
+		this.defaultQualifier = qualifier;
+
+		this.nodeChangeListener.observeChildren((IEclipsePreferences) getStorePreferences().parent());
+	}
+
+	/**
+	 * Called if a node was added to one of the observed parent nodes.
+	 *
+	 * @param name the name of the added node
+	 */
+	private void nodeAdded(String name) {
+		if (nodeQualifier.equals(name) || name.equals(defaultQualifier)) {
+			invalidateResolvedNodes();
+			if (nodeQualifier.equals(name) && hasPropertyChangeListeners()) {
+				getStorePreferences().addPreferenceChangeListener(preferencesListener);
+			}
+		}
+	}
+
+	/**
+	 * Called if a node was removed from one of the observed parent nodes.
+	 *
+	 * @param name the name of the removed node
+	 */
+	private void nodeRemoved(String name) {
+		// There are no events from a removed node, but the resolved
+		// nodes and the cached values are stale
+		if (nodeQualifier.equals(name) || name.equals(defaultQualifier)) {
+			invalidateResolvedNodes();
+		}
+	}
+
+	/**
+	 * Initialize the preferences listener.
+	 */
+	private synchronized void initializePreferencesListener() {
+		if (preferencesListener == null) {
+			preferencesListener = event -> {
+
+				if (isSilentRunning()) {
+					return;
+				}
+
+				Object oldValue = event.getOldValue();
+				Object newValue = event.getNewValue();
+				String key = event.getKey();
+				if (newValue == null) {
+					newValue = getDefault(key, oldValue);
+				} else if (oldValue == null) {
+					oldValue = getDefault(key, newValue);
+				}
+				firePropertyChangeEvent(event.getKey(), oldValue, newValue);
+			};
+			getStorePreferences().addPreferenceChangeListener(preferencesListener);
+		}
+
+	}
+
+	/**
+	 * Does its best at determining the default value for the given key. Checks the
+	 * given object's type and then looks in the list of defaults to see if a value
+	 * exists. If not or if there is a problem converting the value, the default
+	 * default value for that type is returned.
+	 *
+	 * @param key the key to search
+	 * @param obj the object who default we are looking for
+	 * @return Object or <code>null</code>
+	 */
+	Object getDefault(String key, Object obj) {
+		IEclipsePreferences defaults = getDefaultPreferences();
+		if (obj instanceof String) {
+			return defaults.get(key, STRING_DEFAULT_DEFAULT);
+		} else if (obj instanceof Integer) {
+			return Integer.valueOf(defaults.getInt(key, INT_DEFAULT_DEFAULT));
+		} else if (obj instanceof Double) {
+			return Double.valueOf(defaults.getDouble(key, DOUBLE_DEFAULT_DEFAULT));
+		} else if (obj instanceof Float) {
+			return Float.valueOf(defaults.getFloat(key, FLOAT_DEFAULT_DEFAULT));
+		} else if (obj instanceof Long) {
+			return Long.valueOf(defaults.getLong(key, LONG_DEFAULT_DEFAULT));
+		} else if (obj instanceof Boolean) {
+			return defaults.getBoolean(key, BOOLEAN_DEFAULT_DEFAULT) ? Boolean.TRUE : Boolean.FALSE;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Return the IEclipsePreferences node associated with this store.
+	 *
+	 * @return the preference node for this store
+	 */
+	IEclipsePreferences getStorePreferences() {
+		IEclipsePreferences node = this.storeNode;
+		if (node == null) {
+			node = storeContext.getNode(nodeQualifier);
+			this.storeNode = node;
+		}
+		return node;
+	}
+
+	/**
+	 * @return the qualifier used to look up the preference node of this store
+	 */
+	public String getNodeQualifier() {
+		return nodeQualifier;
+	}
+
+	/**
+	 * Return the default IEclipsePreferences for this store.
+	 *
+	 * @return this store's default preference node
+	 */
+	private IEclipsePreferences getDefaultPreferences() {
+		IEclipsePreferences[] nodes = getResolvedNodes();
+		return nodes[nodes.length - 1];
+	}
+
+	/**
+	 * Return the resolved nodes of the search path, with the default node as the
+	 * last element. The nodes are only resolved again if the search contexts were
+	 * changed or nodes were added or removed. The returned array is shared and
+	 * <em>MUST NOT</em> be modified.
+	 *
+	 * @return the resolved nodes of the search path including the default node
+	 */
+	private IEclipsePreferences[] getResolvedNodes() {
+		IEclipsePreferences[] nodes = this.resolvedNodes;
+		if (nodes == null) {
+			nodes = resolveNodes();
+		}
+		return nodes;
+	}
+
+	/**
+	 * Resolve the nodes of the search path and register the node change listener
+	 * on their parents.
+	 *
+	 * @return the resolved nodes of the search path including the default node
+	 */
+	private synchronized IEclipsePreferences[] resolveNodes() {
+		IEclipsePreferences[] nodes = this.resolvedNodes;
+		if (nodes != null) {
+			return nodes;
+		}
+
+		// if the user didn't specify a search order, then use the scope that
+		// this store was created on.
+		IScopeContext[] contexts = searchContexts;
+		if (contexts == null) {
+			nodes = new IEclipsePreferences[] { getStorePreferences(), defaultContext.getNode(defaultQualifier) };
+		} else {
+			nodes = new IEclipsePreferences[contexts.length + 1];
+			for (int i = 0; i < contexts.length; i++) {
+				nodes[i] = contexts[i].getNode(nodeQualifier);
+			}
+			nodes[contexts.length] = defaultContext.getNode(defaultQualifier);
+		}
+
+		IEclipsePreferences storeParent = (IEclipsePreferences) getStorePreferences().parent();
+		Set<IEclipsePreferences> parents = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (IEclipsePreferences node : nodes) {
+			IEclipsePreferences parent = (IEclipsePreferences) node.parent();
+			if (parent != null && parent != storeParent) {
+				parents.add(parent);
+			}
+		}
+		if (!this.disposed) {
+			for (IEclipsePreferences parent : this.observedParents) {
+				if (!parents.contains(parent)) {
+					this.nodeChangeListener.unobserveChildren(parent);
+				}
+			}
+			for (IEclipsePreferences parent : parents) {
+				if (!this.observedParents.contains(parent)) {
+					this.nodeChangeListener.observeChildren(parent);
+				}
+			}
+			this.observedParents.clear();
+			this.observedParents.addAll(parents);
+		}
+
+		this.resolvedNodes = nodes;
+		return nodes;
+	}
+
+	/**
+	 * Mark the resolved nodes as stale, so they are resolved again on the next
+	 * access. Also resets the change tracking as it is bound to the resolved
+	 * nodes.
+	 */
+	private void invalidateResolvedNodes() {
+		synchronized (this) {
+			this.storeNode = null;
+			this.resolvedNodes = null;
+		}
+		resetChangeTracking();
+	}
+
+	@Override
+	public void addPropertyChangeListener(IPropertyChangeListener listener) {
+		initializePreferencesListener();// Create the preferences listener if it
+		// does not exist
+		addListenerObject(listener);
+	}
+
+	/**
+	 * Add a property change listener that is only notified about changes of the
+	 * given key. Other than listeners added via
+	 * {@link #addPropertyChangeListener(IPropertyChangeListener)} it is not
+	 * touched on changes of other keys, so the notification costs do not grow
+	 * with the number of registered listeners.
+	 *
+	 * @param key      the key the listener is interested in
+	 * @param listener the listener to add
+	 */
+	public void addPropertyChangeListener(String key, IPropertyChangeListener listener) {
+		initializePreferencesListener();
+		addFilteredListener(this.keyListeners, key, listener);
+	}
+
+	/**
+	 * Remove a property change listener that was added for the given key via
+	 * {@link #addPropertyChangeListener(String, IPropertyChangeListener)}.
+	 *
+	 * @param key      the key the listener was added for
+	 * @param listener the listener to remove
+	 */
+	public void removePropertyChangeListener(String key, IPropertyChangeListener listener) {
+		removeFilteredListener(this.keyListeners, key, listener);
+	}
+
+	/**
+	 * Add a property change listener that is only notified about changes of keys
+	 * that start with the given prefix.
+	 *
+	 * @param prefix   the prefix of the keys the listener is interested in
+	 * @param listener the listener to add
+	 */
+	public void addPrefixPropertyChangeListener(String prefix, IPropertyChangeListener listener) {
+		initializePreferencesListener();
+		addFilteredListener(this.prefixListeners, prefix, listener);
+	}
+
+	/**
+	 * Remove a property change listener that was added for the given prefix via
+	 * {@link #addPrefixPropertyChangeListener(String, IPropertyChangeListener)}.
+	 *
+	 * @param prefix   the prefix the listener was added for
+	 * @param listener the listener to remove
+	 */
+	public void removePrefixPropertyChangeListener(String prefix, IPropertyChangeListener listener) {
+		removeFilteredListener(this.prefixListeners, prefix, listener);
+	}
+
+	private void addFilteredListener(Map<String, ListenerList<IPropertyChangeListener>> listeners, String filter,
+			IPropertyChangeListener listener) {
+		Assert.isNotNull(filter);
+		listeners.compute(filter, (key, list) -> {
+			ListenerList<IPropertyChangeListener> result = list != null ? list : new ListenerList<>();
+			result.add(listener);
+			return result;
+		});
+	}
+
+	private void removeFilteredListener(Map<String, ListenerList<IPropertyChangeListener>> listeners,
+			String filter, IPropertyChangeListener listener) {
+		if (filter == null) {
+			return;
+		}
+		listeners.computeIfPresent(filter, (key, list) -> {
+			list.remove(listener);
+			return list.isEmpty() ? null : list;
+		});
+		if (!hasPropertyChangeListeners()) {
+			disposePreferenceStoreListener();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if there is any property change listener
+	 *         registered on this store, either for all keys or filtered by key
+	 *         or prefix
+	 */
+	public boolean hasPropertyChangeListeners() {
+		return isListenerAttached() || !this.keyListeners.isEmpty() || !this.prefixListeners.isEmpty();
+	}
+
+	/**
+	 * Return the preference path to search preferences on. This is the list of
+	 * preference nodes based on the scope contexts for this store. If there are no
+	 * search contexts set, then return this store's context.
+	 * <p>
+	 * Whether or not the default context should be included in the resulting list
+	 * is specified by the <code>includeDefault</code> parameter.
+	 * </p>
+	 *
+	 * @param includeDefault <code>true</code> if the default context should be
+	 *                       included and <code>false</code> otherwise
+	 * @return IEclipsePreferences[]
+	 * @since 3.4 public, was added in 3.1 as private method
+	 */
+	public IEclipsePreferences[] getPreferenceNodes(boolean includeDefault) {
+		// return a copy, as the resolved nodes are shared
+		IEclipsePreferences[] nodes = getResolvedNodes();
+		return Arrays.copyOf(nodes, includeDefault ? nodes.length : nodes.length - 1);
+	}
+
+	/**
+	 * Set the search contexts to scopes. When searching for a value the seach will
+	 * be done in the order of scope contexts and will not search the storeContext
+	 * unless it is in this list.
+	 * <p>
+	 * If the given list is <code>null</code>, then clear this store's search
+	 * contexts. This means that only this store's scope context and default scope
+	 * will be used during preference value searching.
+	 * </p>
+	 * <p>
+	 * The defaultContext will be added to the end of this list automatically and
+	 * <em>MUST NOT</em> be included by the user.
+	 * </p>
+	 *
+	 * @param scopes a list of scope contexts to use when searching, or
+	 *               <code>null</code>
+	 */
+	public void setSearchContexts(IScopeContext[] scopes) {
+		this.searchContexts = scopes;
+		invalidateResolvedNodes();
+		if (scopes == null) {
+			return;
+		}
+
+		// Assert that the default was not included (we automatically add it to
+		// the end)
+		for (IScopeContext scope : scopes) {
+			if (scope.equals(defaultContext)) {
+				Assert.isTrue(false, "Do not add the default to the search contexts");
+			}
+		}
+	}
+
+	/**
+	 * Enable or disable the cache for looked up values. If enabled, the value of a
+	 * key is looked up in the search path and parsed only once. Subsequent calls
+	 * to the get methods are served from the cache until the value changes in one
+	 * of the nodes of the search path.
+	 * <p>
+	 * The cache is disabled by default.
+	 * </p>
+	 *
+	 * @param enabled <code>true</code> to enable the value cache,
+	 *                <code>false</code> to disable and clear it
+	 */
+	public synchronized void setValueCacheEnabled(boolean enabled) {
+		if (this.valueCacheEnabled == enabled) {
+			return;
+		}
+		this.valueCacheEnabled = enabled;
+		updateSearchPathListener();
+		clearValueCache();
+	}
+
+	/**
+	 * @return <code>true</code> if looked up values are cached,
+	 *         <code>false</code> if every get method call performs a lookup in
+	 *         the search path
+	 */
+	public boolean isValueCacheEnabled() {
+		return this.valueCacheEnabled;
+	}
+
+	/**
+	 * Set the schema that declares the type, the default value and the allowed
+	 * range of keys of this store. The declared default values are set as
+	 * defaults of this store for the keys that do not have a default value yet,
+	 * so defaults that were set before, e.g. via a preference initializer, are
+	 * kept. The values of declared keys are parsed only once
+	 * after they were loaded or changed, and malformed or out of range stored
+	 * values are returned as the declared default value. Setting an invalid value
+	 * for a declared key fails with an {@link IllegalArgumentException}.
+	 *
+	 * @param schema the schema of the keys of this store, or <code>null</code>
+	 *               to remove the schema
+	 */
+	public synchronized void setKeySchema(PreferenceKeySchema schema) {
+		this.keySchema = schema;
+		if (schema != null) {
+			IEclipsePreferences defaults = getDefaultPreferences();
+			for (PreferenceKey key : schema.getKeys()) {
+				if (defaults.get(key.getName(), null) == null) {
+					defaults.put(key.getName(), key.getDefaultValue().toString());
+				}
+			}
+		}
+		updateSearchPathListener();
+		clearValueCache();
+	}
+
+	/**
+	 * @return the schema of the keys of this store, or <code>null</code> if no
+	 *         schema is set
+	 */
+	public PreferenceKeySchema getKeySchema() {
+		return this.keySchema;
+	}
+
+	/**
+	 * Check the given value against the declaration of the key in the key schema.
+	 *
+	 * @param name  the key
+	 * @param value the string representation of the value to set
+	 * @throws IllegalArgumentException if the key is declared and the value does
+	 *                                  not match its type or range
+	 */
+	private void checkValue(String name, String value) {
+		PreferenceKeySchema schema = this.keySchema;
+		PreferenceKey key = schema != null ? schema.getKey(name) : null;
+		if (key != null && !key.isValid(value)) {
+			throw new IllegalArgumentException("Invalid value " + value + " for preference " + key); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Register the search path listener on all nodes of the search path,
+	 * including the default node, if changes need to be tracked. Otherwise remove
+	 * it from the nodes it was registered on.
+	 */
+	private synchronized void updateSearchPathListener() {
+		if (this.observedNodes != null) {
+			for (IEclipsePreferences node : this.observedNodes) {
+				this.searchPathListener.unobserveValues(node);
+			}
+			this.observedNodes = null;
+		}
+		if (isChangeTrackingRequired()) {
+			this.observedNodes = getResolvedNodes();
+			for (IEclipsePreferences node : this.observedNodes) {
+				this.searchPathListener.observeValues(node);
+			}
+		}
+	}
+
+	/**
+	 * Clear the tracked state and re-register the search path listener, e.g.
+	 * after the search path has changed.
+	 */
+	private synchronized void resetChangeTracking() {
+		if (isChangeTrackingRequired()) {
+			updateSearchPathListener();
+			clearValueCache();
+			if (this.effectiveValueIndexEnabled) {
+				buildEffectiveValueIndex();
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the changes in the search path need to be
+	 *         tracked, because a feature that depends on it is enabled
+	 */
+	private boolean isChangeTrackingRequired() {
+		return !this.disposed && (this.valueCacheEnabled || this.effectiveValueIndexEnabled
+				|| this.snapshotsEnabled || this.keySchema != null);
+	}
+
+	/**
+	 * Enable or disable the index of effective values. If enabled, the effective
+	 * value of every key over the search contexts and the defaults is kept in an
+	 * index. The index is updated incrementally on every change in a node of the
+	 * search path, so looking up a value costs the same regardless of the number
+	 * of search contexts. This is useful if the store is configured with several
+	 * search contexts via {@link #setSearchContexts(IScopeContext[])}.
+	 * <p>
+	 * The index is disabled by default.
+	 * </p>
+	 *
+	 * @param enabled <code>true</code> to enable the index, <code>false</code>
+	 *                to disable and drop it
+	 */
+	public synchronized void setEffectiveValueIndexEnabled(boolean enabled) {
+		if (this.effectiveValueIndexEnabled == enabled) {
+			return;
+		}
+		this.effectiveValueIndexEnabled = enabled;
+		updateSearchPathListener();
+		if (enabled) {
+			buildEffectiveValueIndex();
+		} else {
+			synchronized (this.effectiveValuesLock) {
+				this.effectiveValues = null;
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the effective values are indexed,
+	 *         <code>false</code> if values are looked up in the nodes of the
+	 *         search path
+	 */
+	public boolean isEffectiveValueIndexEnabled() {
+		return this.effectiveValueIndexEnabled;
+	}
+
+	/**
+	 * Build the index of effective values. While the index is built, values are
+	 * looked up in the nodes. The index is built while holding the lock that
+	 * also guards the incremental updates, so a change in the search path that
+	 * happens meanwhile is applied to the index after it was published.
+	 */
+	private void buildEffectiveValueIndex() {
+		synchronized (this.effectiveValuesLock) {
+			// readers fall back to the nodes while the index is built
+			this.effectiveValues = null;
+			this.effectiveValues = new ConcurrentHashMap<>(collectValues());
+		}
+	}
+
+	/**
+	 * Update the effective value of the given key in the index.
+	 *
+	 * @param key the key whose value changed
+	 */
+	private void updateEffectiveValue(String key) {
+		synchronized (this.effectiveValuesLock) {
+			Map<String, String> index = this.effectiveValues;
+			if (index != null) {
+				String value = lookupNodes(key, true);
+				if (value == null) {
+					index.remove(key);
+				} else {
+					index.put(key, value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove all values from the value cache.
+	 */
+	private void clearValueCache() {
+		this.modificationCount.incrementAndGet();
+		this.valueCache.clear();
+	}
+
+	/**
+	 * Called if the value of the given key changed in a node of the search path.
+	 *
+	 * @param key the key whose value changed
+	 */
+	private void searchPathChanged(String key) {
+		this.modificationCount.incrementAndGet();
+		updateEffectiveValue(key);
+		this.valueCache.remove(key);
+	}
+
+	/**
+	 * Return the cached value for the given key. If there is no cached value yet,
+	 * the value is looked up and added to the cache.
+	 *
+	 * @param key     the key to search with
+	 * @param counted <code>true</code> if the read is reported to the monitor,
+	 *                <code>false</code> for internal reads, e.g. of the old value
+	 *                in the set methods
+	 * @return the {@link CachedValue} or <code>null</code> if the value cache is
+	 *         disabled and the key is not declared in the key schema
+	 */
+	private CachedValue getCachedValue(String key, boolean counted) {
+		if (key == null) {
+			return null;
+		}
+		IPreferenceStoreMonitor storeMonitor = counted ? getEnabledMonitor() : null;
+		if (storeMonitor != null) {
+			storeMonitor.valueRead(this.nodeQualifier);
+		}
+		PreferenceKeySchema schema = this.keySchema;
+		PreferenceKey declaredKey = schema != null ? schema.getKey(key) : null;
+		if (this.disposed || !this.valueCacheEnabled && declaredKey == null) {
+			return null;
+		}
+		CachedValue cached = this.valueCache.get(key);
+		if (storeMonitor != null) {
+			storeMonitor.valueCacheAccessed(this.nodeQualifier, cached != null);
+		}
+		if (cached == null) {
+			long generation = this.modificationCount.get();
+			cached = new CachedValue(internalGet(key), declaredKey);
+			CachedValue existing = this.valueCache.putIfAbsent(key, cached);
+			if (existing != null) {
+				return existing;
+			}
+			if (generation != this.modificationCount.get()) {
+				// the value changed while it was looked up, do not keep it
+				this.valueCache.remove(key, cached);
+			}
+		}
+		return cached;
+	}
+
+	/**
+	 * Return an immutable snapshot of the effective values of this store, i.e.
+	 * the values that the get methods return, resolved over the search contexts
+	 * and the defaults. The snapshot can be held and queried without further
+	 * lookups and is not affected by later modifications.
+	 * <p>
+	 * Creating a snapshot is cheap if nothing changed since the last call, as
+	 * the last snapshot is reused in that case. The first call starts tracking
+	 * the changes in the search path.
+	 * </p>
+	 *
+	 * @return the snapshot of the current effective values
+	 */
+	public PreferenceStoreSnapshot snapshot() {
+		if (this.disposed) {
+			// changes are not tracked anymore, so the snapshot can not be reused
+			return createSnapshot();
+		}
+		if (!this.snapshotsEnabled) {
+			synchronized (this) {
+				if (!this.snapshotsEnabled) {
+					this.snapshotsEnabled = true;
+					updateSearchPathListener();
+				}
+			}
+		}
+		PreferenceStoreSnapshot current = this.snapshot;
+		if (current == null || current.getVersion() != this.modificationCount.get()) {
+			current = createSnapshot();
+			this.snapshot = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Create a new snapshot. The values are collected optimistically and the
+	 * collection is repeated if a change happened meanwhile. If the store is
+	 * modified continuously, the values are collected while holding all key
+	 * locks.
+	 *
+	 * @return the new snapshot
+	 */
+	private PreferenceStoreSnapshot createSnapshot() {
+		for (int attempt = 0; attempt < 3; attempt++) {
+			long version = this.modificationCount.get();
+			Map<String, String> values = collectValues();
+			if (version == this.modificationCount.get()) {
+				return new PreferenceStoreSnapshot(version, values);
+			}
+		}
+		return createLockedSnapshot(0);
+	}
+
+	private PreferenceStoreSnapshot createLockedSnapshot(int stripe) {
+		if (stripe == this.keyLocks.length) {
+			long version = this.modificationCount.get();
+			return new PreferenceStoreSnapshot(version, collectValues());
+		}
+		synchronized (this.keyLocks[stripe]) {
+			return createLockedSnapshot(stripe + 1);
+		}
+	}
+
+	/**
+	 * Collect the effective values of all keys in the search path.
+	 *
+	 * @return the effective values mapped by key
+	 */
+	private Map<String, String> collectValues() {
+		IEclipsePreferences[] nodes = getResolvedNodes();
+		Map<String, String> values = new HashMap<>();
+		// start with the defaults, so the nodes earlier in the search path win
+		for (int i = nodes.length - 1; i >= 0; i--) {
+			try {
+				for (String key : nodes[i].keys()) {
+					String value = nodes[i].get(key, null);
+					if (value != null) {
+						values.put(key, value);
+					}
+				}
+			} catch (BackingStoreException e) {
+				// the node can not be read and does not contribute values
+			}
+		}
+		return values;
+	}
+
+	@Override
+	public boolean contains(String name) {
+		if (name == null) {
+			return false;
+		}
+		return lookup(name, true) != null;
+	}
+
+	/**
+	 * Start a batch of modifications. Until the matching {@link #endBatch()}
+	 * the modifications are applied to the preference node as usual, but the
+	 * property change listeners are not notified. Instead the changes are
+	 * collected and one event per changed key is fired when the batch ends.
+	 * Batches can be nested, the events are fired when the outermost batch
+	 * ends.
+	 * <p>
+	 * A batch only coalesces the change events, it is not a transaction. The
+	 * writes are applied immediately, are visible to other readers while the
+	 * batch is running, and are not rolled back if the batch ends because of
+	 * an exception.
+	 * </p>
+	 * <p>
+	 * A batch is bound to the thread that started it. Modifications performed by
+	 * other threads are not collected in the batch.
+	 * </p>
+	 * <p>
+	 * Should be used in a try-finally block:
+	 * </p>
+	 *
+	 * <pre>
+	 * store.beginBatch();
+	 * try {
+	 * 	store.setValue("key1", 1);
+	 * 	store.setValue("key2", "value");
+	 * } finally {
+	 * 	store.endBatch();
+	 * }
+	 * </pre>
+	 */
+	public void beginBatch() {
+		Batch current = this.batch.get();
+		if (current == null) {
+			current = new Batch();
+			this.batch.set(current);
+		}
+		current.depth++;
+	}
+
+	/**
+	 * Finish a batch of modifications started via {@link #beginBatch()}. If this
+	 * finishes the outermost batch, a single event is fired for every key whose
+	 * value changed in the batch. Keys that were changed and then reset to their
+	 * original value do not fire an event.
+	 */
+	public void endBatch() {
+		Batch current = this.batch.get();
+		Assert.isTrue(current != null, "No batch was started");
+		if (--current.depth > 0) {
+			return;
+		}
+		this.batch.remove();
+		for (Map.Entry<String, Object[]> entry : current.events.entrySet()) {
+			Object[] values = entry.getValue();
+			if (!Objects.equals(values[0], values[1])) {
+				firePropertyChangeEvent(entry.getKey(), values[0], values[1]);
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if a batch of modifications was started via
+	 *         {@link #beginBatch()} and not yet ended
+	 */
+	public boolean isBatchRunning() {
+		return this.batch.get() != null;
+	}
+
+	@Override
+	public void firePropertyChangeEvent(String name, Object oldValue, Object newValue) {
+		Batch current = this.batch.get();
+		if (current != null) {
+			// coalesce the events of a key while a batch is running
+			Object[] values = current.events.get(name);
+			if (values == null) {
+				current.events.put(name, new Object[] { oldValue, newValue });
+			} else {
+				values[1] = newValue;
+			}
+			return;
+		}
+		// important: create intermediate array to protect against listeners
+		// being added/removed during the notification
+		final Object[] listeners = getListeners();
+		final ListenerList<IPropertyChangeListener> forKey = name != null ? this.keyListeners.get(name) : null;
+		final boolean checkPrefixes = name != null && !this.prefixListeners.isEmpty();
+		if (listeners.length == 0 && forKey == null && !checkPrefixes) {
+			return;
+		}
+		final PropertyChangeEvent event = new PropertyChangeEvent(this, name, oldValue, newValue);
+		final String errorMessage = JFaceResources.getString("PreferenceStore.changeError"); //$NON-NLS-1$
+		for (Object listener : listeners) {
+			notifyListener((IPropertyChangeListener) listener, event, errorMessage);
+		}
+		if (forKey != null) {
+			for (IPropertyChangeListener listener : forKey) {
+				notifyListener(listener, event, errorMessage);
+			}
+		}
+		if (checkPrefixes) {
+			for (Map.Entry<String, ListenerList<IPropertyChangeListener>> entry : this.prefixListeners.entrySet()) {
+				if (name.startsWith(entry.getKey())) {
+					for (IPropertyChangeListener listener : entry.getValue()) {
+						notifyListener(listener, event, errorMessage);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Notify the given listener about the given event. Exceptions thrown by the
+	 * listener are handled and do not stop the notification of other listeners.
+	 * If a listener executor is set, the listener is notified asynchronously.
+	 *
+	 * @param listener     the listener to notify
+	 * @param event        the event to pass to the listener
+	 * @param errorMessage the message to show if the listener fails
+	 */
+	private void notifyListener(IPropertyChangeListener listener, PropertyChangeEvent event, String errorMessage) {
+		IPreferenceStoreMonitor storeMonitor = getEnabledMonitor();
+		SafeRunnable notification = new SafeRunnable(errorMessage) {
+			@Override
+			public void run() {
+				if (storeMonitor == null) {
+					listener.propertyChange(event);
+					return;
+				}
+				long start = System.nanoTime();
+				try {
+					listener.propertyChange(event);
+				} finally {
+					storeMonitor.listenerNotified(nodeQualifier, listener, System.nanoTime() - start);
+				}
+			}
+		};
+		SerialExecutor queue = null;
+		if (this.listenerExecutor != null || this.listenerQueuesInUse) {
+			queue = getListenerQueue(listener);
+		}
+		if (queue == null) {
+			SafeRunner.run(notification);
+		} else {
+			queue.execute(() -> SafeRunner.run(notification));
+		}
+	}
+
+	/**
+	 * Return the queue to notify the given listener. If no listener executor is
+	 * set, only the queue of a listener that still has queued events is
+	 * returned, so these events are delivered first.
+	 *
+	 * @param listener the listener to notify
+	 * @return the queue of the listener or <code>null</code> if the listener
+	 *         should be notified directly
+	 */
+	private SerialExecutor getListenerQueue(IPropertyChangeListener listener) {
+		synchronized (this.listenerQueues) {
+			Executor executor = this.listenerExecutor;
+			if (executor != null) {
+				this.listenerQueuesInUse = true;
+				return this.listenerQueues.computeIfAbsent(listener, l -> new SerialExecutor(executor));
+			}
+			SerialExecutor queue = this.listenerQueues.get(listener);
+			if (queue != null && queue.isIdle()) {
+				this.listenerQueues.remove(listener);
+				queue = null;
+			}
+			this.listenerQueuesInUse = !this.listenerQueues.isEmpty();
+			return queue;
+		}
+	}
+
+	/**
+	 * Set the executor that is used to notify the property change listeners. If
+	 * set, the events are queued and delivered asynchronously, so a slow listener
+	 * does not block the thread that modifies the store. The events are delivered
+	 * to every single listener in the order they were fired. If the executor
+	 * rejects the execution, e.g. because it was shut down, the events are
+	 * delivered on the thread that modifies the store. Listeners that touch
+	 * SWT widgets should be wrapped in a {@link DisplayPropertyChangeListener}.
+	 * <p>
+	 * Any {@link Executor} can be used, e.g. a thread pool or on Java 21 and
+	 * later a virtual thread per task executor.
+	 * </p>
+	 *
+	 * @param executor the executor used to notify the listeners, or
+	 *                 <code>null</code> to notify the listeners synchronously on
+	 *                 the thread that modifies the store (default)
+	 */
+	public void setListenerExecutor(Executor executor) {
+		synchronized (this.listenerQueues) {
+			this.listenerExecutor = executor;
+			// keep the queues, so events still queued are not overtaken by newer ones
+			Executor queueExecutor = (executor != null) ? executor : Runnable::run;
+			this.listenerQueues.values().forEach(queue -> queue.setExecutor(queueExecutor));
+			if (executor == null) {
+				this.listenerQueues.values().removeIf(SerialExecutor::isIdle);
+				this.listenerQueuesInUse = !this.listenerQueues.isEmpty();
+			}
+		}
+	}
+
+	/**
+	 * @return the executor used to notify the property change listeners, or
+	 *         <code>null</code> if the listeners are notified synchronously
+	 */
+	public Executor getListenerExecutor() {
+		return this.listenerExecutor;
+	}
+
+	@Override
+	public boolean getBoolean(String name) {
+		return getBoolean(name, true);
+	}
+
+	private boolean getBoolean(String name, boolean counted) {
+		CachedValue cached = getCachedValue(name, counted);
+		if (cached == null) {
+			return toBoolean(internalGet(name));
+		}
+		if (cached.declared instanceof Boolean) {
+			return (Boolean) cached.declared;
+		}
+		Object parsed = cached.parsed;
+		if (parsed instanceof Boolean) {
+			return (Boolean) parsed;
+		}
+		boolean value = toBoolean(cached.value);
+		cached.parsed = value;
+		return value;
+	}
+
+	static boolean toBoolean(String value) {
+		return value == null ? BOOLEAN_DEFAULT_DEFAULT : Boolean.parseBoolean(value);
+	}
+
+	@Override
+	public boolean getDefaultBoolean(String name) {
+		return getDefaultPreferences().getBoolean(name, BOOLEAN_DEFAULT_DEFAULT);
+	}
+
+	@Override
+	public double getDefaultDouble(String name) {
+		return getDefaultPreferences().getDouble(name, DOUBLE_DEFAULT_DEFAULT);
+	}
+
+	@Override
+	public float getDefaultFloat(String name) {
+		return getDefaultPreferences().getFloat(name, FLOAT_DEFAULT_DEFAULT);
+	}
+
+	@Override
+	public int getDefaultInt(String name) {
+		return getDefaultPreferences().getInt(name, INT_DEFAULT_DEFAULT);
+	}
+
+	@Override
+	public long getDefaultLong(String name) {
+		return getDefaultPreferences().getLong(name, LONG_DEFAULT_DEFAULT);
+	}
+
+	@Override
+	public String getDefaultString(String name) {
+		return getDefaultPreferences().get(name, STRING_DEFAULT_DEFAULT);
+	}
+
+	@Override
+	public double getDouble(String name) {
+		return getDouble(name, true);
+	}
+
+	private double getDouble(String name, boolean counted) {
+		CachedValue cached = getCachedValue(name, counted);
+		if (cached == null) {
+			return toDouble(internalGet(name));
+		}
+		if (cached.declared instanceof Double) {
+			return (Double) cached.declared;
+		}
+		Object parsed = cached.parsed;
+		if (parsed instanceof Double) {
+			return (Double) parsed;
+		}
+		double value = toDouble(cached.value);
+		cached.parsed = value;
+		return value;
+	}
+
+	static double toDouble(String value) {
+		return NumberParser.parseDouble(value, DOUBLE_DEFAULT_DEFAULT);
+	}
+
+	/**
+	 * Return the string value for the specified key. Look in the nodes which are
+	 * specified by this object's list of search scopes. If the value does not exist
+	 * then return <code>null</code>.
+	 *
+	 * @param key the key to search with
+	 * @return String or <code>null</code> if the value does not exist.
+	 */
+	private String internalGet(String key) {
+		return lookup(key, true);
+	}
+
+	/**
+	 * Return the effective value of the given key. Uses the effective value index
+	 * if available, otherwise looks up the value in the nodes of the search path.
+	 *
+	 * @param key            the key to search with
+	 * @param includeDefault <code>true</code> if the default node should be
+	 *                       searched and <code>false</code> otherwise
+	 * @return String or <code>null</code> if the value does not exist.
+	 */
+	private String lookup(String key, boolean includeDefault) {
+		if (includeDefault) {
+			Map<String, String> index = this.effectiveValues;
+			if (index != null) {
+				return index.get(key);
+			}
+		}
+		return lookupNodes(key, includeDefault);
+	}
+
+	/**
+	 * Return the value of the first node in the resolved search path that contains
+	 * the given key. Equivalent to
+	 * {@link org.eclipse.core.runtime.preferences.IPreferencesService#get(String, String, org.osgi.service.prefs.Preferences[])}
+	 * but without creating the array of nodes.
+	 *
+	 * @param key            the key to search with
+	 * @param includeDefault <code>true</code> if the default node should be
+	 *                       searched and <code>false</code> otherwise
+	 * @return String or <code>null</code> if the value does not exist.
+	 */
+	private String lookupNodes(String key, boolean includeDefault) {
+		IEclipsePreferences[] nodes = getResolvedNodes();
+		int length = includeDefault ? nodes.length : nodes.length - 1;
+		for (int i = 0; i < length; i++) {
+			String value = nodes[i].get(key, null);
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public float getFloat(String name) {
+		return getFloat(name, true);
+	}
+
+	private float getFloat(String name, boolean counted) {
+		CachedValue cached = getCachedValue(name, counted);
+		if (cached == null) {
+			return toFloat(internalGet(name));
+		}
+		if (cached.declared instanceof Float) {
+			return (Float) cached.declared;
+		}
+		Object parsed = cached.parsed;
+		if (parsed instanceof Float) {
+			return (Float) parsed;
+		}
+		float value = toFloat(cached.value);
+		cached.parsed = value;
+		return value;
+	}
+
+	static float toFloat(String value) {
+		return NumberParser.parseFloat(value, FLOAT_DEFAULT_DEFAULT);
+	}
+
+	@Override
+	public int getInt(String name) {
+		return getInt(name, true);
+	}
+
+	private int getInt(String name, boolean counted) {
+		CachedValue cached = getCachedValue(name, counted);
+		if (cached == null) {
+			return toInt(internalGet(name));
+		}
+		if (cached.declared instanceof Integer) {
+			return (Integer) cached.declared;
+		}
+		Object parsed = cached.parsed;
+		if (parsed instanceof Integer) {
+			return (Integer) parsed;
+		}
+		int value = toInt(cached.value);
+		cached.parsed = value;
+		return value;
+	}
+
+	static int toInt(String value) {
+		return NumberParser.parseInt(value, INT_DEFAULT_DEFAULT);
+	}
+
+	@Override
+	public long getLong(String name) {
+		return getLong(name, true);
+	}
+
+	private long getLong(String name, boolean counted) {
+		CachedValue cached = getCachedValue(name, counted);
+		if (cached == null) {
+			return toLong(internalGet(name));
+		}
+		if (cached.declared instanceof Long) {
+			return (Long) cached.declared;
+		}
+		Object parsed = cached.parsed;
+		if (parsed instanceof Long) {
+			return (Long) parsed;
+		}
+		long value = toLong(cached.value);
+		cached.parsed = value;
+		return value;
+	}
+
+	static long toLong(String value) {
+		return NumberParser.parseLong(value, LONG_DEFAULT_DEFAULT);
+	}
+
+	@Override
+	public String getString(String name) {
+		return getString(name, true);
+	}
+
+	private String getString(String name, boolean counted) {
+		CachedValue cached = getCachedValue(name, counted);
+		if (cached == null) {
+			String value = internalGet(name);
+			return value == null ? STRING_DEFAULT_DEFAULT : value;
+		}
+		return cached.value == null ? STRING_DEFAULT_DEFAULT : cached.value;
+	}
+
+	@Override
+	public boolean isDefault(String name) {
+		if (name == null) {
+			return false;
+		}
+		return lookup(name, false) == null;
+	}
+
+	@Override
+	public boolean needsSaving() {
+		return dirty.get();
+	}
+
+	/**
+	 * Mark this store as having changes to be saved and notify the dirty handler
+	 * if the store was not dirty before. Must not be called while holding a key
+	 * lock.
+	 */
+	private void markDirty() {
+		IPreferenceStoreMonitor storeMonitor = getEnabledMonitor();
+		if (storeMonitor != null) {
+			storeMonitor.valueWritten(this.nodeQualifier);
+		}
+		if (dirty.compareAndSet(false, true)) {
+			Consumer<? super ScopedPreferenceStore> handler = this.dirtyHandler;
+			if (handler != null) {
+				handler.accept(this);
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the property changes caused by the current
+	 *         thread should not be propagated to the listeners
+	 */
+	protected boolean isSilentRunning() {
+		return this.silentRunning.get()[0] > 0;
+	}
+
+	/**
+	 * Turn off the propagation of property changes caused by the current thread.
+	 * Every call needs to be followed by a call to {@link #endSilentRunning()}.
+	 */
+	private void beginSilentRunning() {
+		this.silentRunning.get()[0]++;
+	}
+
+	/**
+	 * Restart the propagation of property changes caused by the current thread.
+	 */
+	private void endSilentRunning() {
+		this.silentRunning.get()[0]--;
+	}
+
+	/**
+	 * Return the lock used to serialize the modifications of the given key.
+	 *
+	 * @param name the key to modify
+	 * @return the lock for the given key
+	 */
+	private Object getKeyLock(String name) {
+		int hash = name == null ? 0 : name.hashCode();
+		return this.keyLocks[(hash ^ (hash >>> 16)) & (KEY_LOCK_STRIPES - 1)];
+	}
+
+	/**
+	 * Set the handler that is notified when this store becomes dirty, i.e. when
+	 * {@link #needsSaving()} changes from <code>false</code> to
+	 * <code>true</code>. Used to schedule a deferred save of the store.
+	 *
+	 * @param handler the handler to notify, or <code>null</code> to remove the
+	 *                current handler
+	 */
+	public void setDirtyHandler(Consumer<? super ScopedPreferenceStore> handler) {
+		this.dirtyHandler = handler;
+	}
+
+	/**
+	 * Set the monitor that is notified about the reads, writes, listener
+	 * notifications and flushes of this store. Without a monitor, or while
+	 * the monitor is disabled, there is no measuring overhead.
+	 *
+	 * @param monitor the monitor to notify, or <code>null</code> to stop
+	 *                monitoring this store
+	 */
+	public void setMonitor(IPreferenceStoreMonitor monitor) {
+		this.monitor = monitor;
+	}
+
+	/**
+	 * @return the monitor of this store, or <code>null</code> if the store is
+	 *         not monitored
+	 */
+	public IPreferenceStoreMonitor getMonitor() {
+		return this.monitor;
+	}
+
+	/**
+	 * @return the monitor of this store, or <code>null</code> if the store is
+	 *         not monitored or the monitor is disabled
+	 */
+	private IPreferenceStoreMonitor getEnabledMonitor() {
+		IPreferenceStoreMonitor storeMonitor = this.monitor;
+		return (storeMonitor != null && storeMonitor.isEnabled()) ? storeMonitor : null;
+	}
+
+	@Override
+	public void putValue(String name, String value) {
+		checkValue(name, value);
+		try {
+			synchronized (getKeyLock(name)) {
+				// Do not notify listeners
+				beginSilentRunning();
+				try {
+					getStorePreferences().put(name, value);
+				} finally {
+					// Be sure that an exception does not stop property updates
+					endSilentRunning();
+				}
+			}
+		} finally {
+			markDirty();
+		}
+	}
+
+	@Override
+	public void removePropertyChangeListener(IPropertyChangeListener listener) {
+		removeListenerObject(listener);
+		if (!hasPropertyChangeListeners()) {
+			disposePreferenceStoreListener();
+		}
+	}
+
+	@Override
+	public void setDefault(String name, double value) {
+		getDefaultPreferences().putDouble(name, value);
+	}
+
+	@Override
+	public void setDefault(String name, float value) {
+		getDefaultPreferences().putFloat(name, value);
+	}
+
+	@Override
+	public void setDefault(String name, int value) {
+		getDefaultPreferences().putInt(name, value);
+	}
+
+	@Override
+	public void setDefault(String name, long value) {
+		getDefaultPreferences().putLong(name, value);
+	}
+
+	@Override
+	public void setDefault(String name, String defaultObject) {
+		getDefaultPreferences().put(name, defaultObject);
+	}
+
+	@Override
+	public void setDefault(String name, boolean value) {
+		getDefaultPreferences().putBoolean(name, value);
+	}
+
+	@Override
+	public void setToDefault(String name) {
+		String oldValue;
+		String defaultValue;
+		synchronized (getKeyLock(name)) {
+			oldValue = getString(name, false);
+			defaultValue = getDefaultString(name);
+			beginSilentRunning();// Turn off updates from the store
+			try {
+				// removing a non-existing preference is a no-op so call the Core
+				// API directly
+				getStorePreferences().remove(name);
+			} finally {
+				endSilentRunning();// Restart listening to preferences
+			}
+		}
+		if (Objects.equals(oldValue, defaultValue)) {
+			return;
+		}
+		try {
+			firePropertyChangeEvent(name, oldValue, defaultValue);
+		} finally {
+			markDirty();
+		}
+	}
+
+	@Override
+	public void setValue(String name, double value) {
+		checkValue(name, String.valueOf(value));
+		double oldValue;
+		synchronized (getKeyLock(name)) {
+			oldValue = getDouble(name, false);
+			if (oldValue == value) {
+				return;
+			}
+			beginSilentRunning();// Turn off updates from the store
+			try {
+				if (getDefaultDouble(name) == value) {
+					getStorePreferences().remove(name);
+				} else {
+					getStorePreferences().putDouble(name, value);
+				}
+			} finally {
+				endSilentRunning();// Restart listening to preferences
+			}
+		}
+		try {
+			firePropertyChangeEvent(name, Double.valueOf(oldValue), Double.valueOf(value));
+		} finally {
+			markDirty();
+		}
+	}
+
+	@Override
+	public void setValue(String name, float value) {
+		checkValue(name, String.valueOf(value));
+		float oldValue;
+		synchronized (getKeyLock(name)) {
+			oldValue = getFloat(name, false);
+			if (oldValue == value) {
+				return;
+			}
+			beginSilentRunning();// Turn off updates from the store
+			try {
+				if (getDefaultFloat(name) == value) {
+					getStorePreferences().remove(name);
+				} else {
+					getStorePreferences().putFloat(name, value);
+				}
+			} finally {
+				endSilentRunning();// Restart listening to preferences
+			}
+		}
+		try {
+			firePropertyChangeEvent(name, Float.valueOf(oldValue), Float.valueOf(value));
+		} finally {
+			markDirty();
+		}
+	}
+
+	@Override
+	public void setValue(String name, int value) {
+		checkValue(name, String.valueOf(value));
+		int oldValue;
+		synchronized (getKeyLock(name)) {
+			oldValue = getInt(name, false);
+			if (oldValue == value) {
+				return;
+			}
+			beginSilentRunning();// Turn off updates from the store
+			try {
+				if (getDefaultInt(name) == value) {
+					getStorePreferences().remove(name);
+				} else {
+					getStorePreferences().putInt(name, value);
+				}
+			} finally {
+				endSilentRunning();// Restart listening to preferences
+			}
+		}
+		try {
+			firePropertyChangeEvent(name, Integer.valueOf(oldValue), Integer.valueOf(value));
+		} finally {
+			markDirty();
+		}
+	}
+
+	@Override
+	public void setValue(String name, long value) {
+		checkValue(name, String.valueOf(value));
+		long oldValue;
+		synchronized (getKeyLock(name)) {
+			oldValue = getLong(name, false);
+			if (oldValue == value) {
+				return;
+			}
+			beginSilentRunning();// Turn off updates from the store
+			try {
+				if (getDefaultLong(name) == value) {
+					getStorePreferences().remove(name);
+				} else {
+					getStorePreferences().putLong(name, value);
+				}
+			} finally {
+				endSilentRunning();// Restart listening to preferences
+			}
+		}
+		try {
+			firePropertyChangeEvent(name, Long.valueOf(oldValue), Long.valueOf(value));
+		} finally {
+			markDirty();
+		}
+	}
+
+	@Override
+	public void setValue(String name, String value) {
+		checkValue(name, value);
+		String oldValue;
+		synchronized (getKeyLock(name)) {
+			oldValue = getString(name, false);
+			beginSilentRunning();// Turn off updates from the store
+			try {
+				if (getDefaultString(name).equals(value)) {
+					getStorePreferences().remove(name);
+				} else {
+					getStorePreferences().put(name, value);
+				}
+			} finally {
+				endSilentRunning();// Restart listening to preferences
+			}
+		}
+		// fire the event directly instead of propagating the node event, so
+		// it is not suppressed by the silent running
+		try {
+			if (!Objects.equals(oldValue, value)) {
+				firePropertyChangeEvent(name, oldValue, value);
+			}
+		} finally {
+			markDirty();
+		}
+	}
+
+	@Override
+	public void setValue(String name, boolean value) {
+		checkValue(name, String.valueOf(value));
+		boolean oldValue;
+		synchronized (getKeyLock(name)) {
+			oldValue = getBoolean(name, false);
+			if (oldValue == value) {
+				return;
+			}
+			beginSilentRunning();// Turn off updates from the store
+			try {
+				if (getDefaultBoolean(name) == value) {
+					getStorePreferences().remove(name);
+				} else {
+					getStorePreferences().putBoolean(name, value);
+				}
+			} finally {
+				endSilentRunning();// Restart listening to preferences
+			}
+		}
+		try {
+			firePropertyChangeEvent(name, oldValue ? Boolean.TRUE : Boolean.FALSE,
+					value ? Boolean.TRUE : Boolean.FALSE);
+		} finally {
+			markDirty();
+		}
+	}
+
+	@Override
+	public void save() throws IOException {
+		saveNow();
+	}
+
+	/**
+	 * Save the store on the calling thread and block until the node is flushed. A
+	 * pending asynchronous save is performed by this call, so the future returned
+	 * by {@link #saveAsync()} is completed. Intended to be used on shutdown.
+	 *
+	 * @throws IOException if there is a problem saving this store
+	 */
+	public void saveNow() throws IOException {
+		CompletableFuture<Void> future;
+		synchronized (this.saveLock) {
+			future = this.pendingSave;
+			this.pendingSave = null;
+			if (this.pendingFlush != null) {
+				this.pendingFlush.cancel(false);
+				this.pendingFlush = null;
+			}
+		}
+		try {
+			flush();
+		} catch (IOException e) {
+			if (future != null) {
+				future.completeExceptionally(e);
+			}
+			throw e;
+		}
+		if (future != null) {
+			future.complete(null);
+		}
+	}
+
+	/**
+	 * Save the store asynchronously. The node is flushed on a background executor
+	 * after the configured save delay. All save requests within that delay are
+	 * coalesced into a single flush and get the same future returned.
+	 *
+	 * @return the future that is completed when the node is flushed, or completed
+	 *         exceptionally with an {@link IOException} if saving failed
+	 * @see #setSaveDelay(long)
+	 * @see #setSaveExecutor(ScheduledExecutorService)
+	 */
+	public CompletableFuture<Void> saveAsync() {
+		CompletableFuture<Void> future;
+		synchronized (this.saveLock) {
+			if (this.pendingSave != null) {
+				return this.pendingSave;
+			}
+			future = new CompletableFuture<>();
+			this.pendingSave = future;
+			try {
+				this.pendingFlush = getSaveExecutor().schedule(this::flushPendingSave, this.saveDelay,
+						TimeUnit.MILLISECONDS);
+				return future;
+			} catch (RejectedExecutionException e) {
+				// the executor was shut down by its owner, flush on the calling thread
+			}
+		}
+		flushPendingSave();
+		return future;
+	}
+
+	/**
+	 * Perform the flush of a pending asynchronous save. Called on the save
+	 * executor.
+	 */
+	private void flushPendingSave() {
+		CompletableFuture<Void> future;
+		synchronized (this.saveLock) {
+			future = this.pendingSave;
+			this.pendingSave = null;
+			this.pendingFlush = null;
+		}
+		if (future == null) {
+			// already performed by saveNow()
+			return;
+		}
+		try {
+			flush();
+			future.complete(null);
+		} catch (IOException | RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Flush the store node on the calling thread.
+	 *
+	 * @throws IOException if there is a problem saving this store
+	 */
+	private void flush() throws IOException {
+		// reset the flag before flushing, so modifications during the flush are
+		// not lost
+		dirty.set(false);
+		IPreferenceStoreMonitor storeMonitor = getEnabledMonitor();
+		long start = storeMonitor != null ? System.nanoTime() : 0;
+		try {
+			getStorePreferences().flush();
+		} catch (BackingStoreException e) {
+			dirty.set(true);
+			if (storeMonitor != null) {
+				storeMonitor.storeFlushed(this.nodeQualifier, System.nanoTime() - start, false);
+			}
+			throw new IOException(e.getMessage());
+		}
+		if (storeMonitor != null) {
+			storeMonitor.storeFlushed(this.nodeQualifier, System.nanoTime() - start, true);
+		}
+	}
+
+	/**
+	 * Set the time that {@link #saveAsync()} waits before the node is flushed. All
+	 * save requests within that time are coalesced into a single flush.
+	 *
+	 * @param delay the delay in milliseconds, <code>0</code> to flush as soon as
+	 *              possible
+	 */
+	public void setSaveDelay(long delay) {
+		Assert.isTrue(delay >= 0, "The save delay must not be negative");
+		this.saveDelay = delay;
+	}
+
+	/**
+	 * @return the time in milliseconds that {@link #saveAsync()} waits before the
+	 *         node is flushed
+	 */
+	public long getSaveDelay() {
+		return this.saveDelay;
+	}
+
+	/**
+	 * Set the executor that is used to flush the node in the background on
+	 * {@link #saveAsync()}.
+	 *
+	 * @param executor the executor to use, or <code>null</code> to use a shared
+	 *                 default executor with a single daemon thread. The caller
+	 *                 owns the executor and is responsible for shutting it down.
+	 *                 Saves requested after the shutdown are performed on the
+	 *                 calling thread.
+	 */
+	public void setSaveExecutor(ScheduledExecutorService executor) {
+		this.saveExecutor = executor;
+	}
+
+	/**
+	 * @return the executor used to flush the node in the background
+	 */
+	private ScheduledExecutorService getSaveExecutor() {
+		ScheduledExecutorService executor = this.saveExecutor;
+		return executor != null ? executor : DefaultSaveExecutor.INSTANCE;
+	}
+
+	/**
+	 * Dispose the receiver.
+	 */
+	private synchronized void disposePreferenceStoreListener() {
+		if (preferencesListener == null) {
+			return;
+		}
+		try {
+			getStorePreferences().removePreferenceChangeListener(preferencesListener);
+		} catch (IllegalStateException e) {
+			// the node was removed and has no listeners anymore
+		}
+		preferencesListener = null;
+	}
+
+	/**
+	 * Detach all listeners this store registered on preference nodes and drop
+	 * the tracked state, so the store can be garbage collected even if the
+	 * preference nodes are still alive. The value cache, the effective value
+	 * index and the snapshot reuse are deactivated, but the store can still be
+	 * used to read and write values.
+	 */
+	public synchronized void dispose() {
+		this.disposed = true;
+		disposePreferenceStoreListener();
+		updateSearchPathListener();
+		clearValueCache();
+		synchronized (this.effectiveValuesLock) {
+			this.effectiveValues = null;
+		}
+		this.snapshot = null;
+
+		this.nodeChangeListener.unobserveChildren((IEclipsePreferences) getStorePreferences().parent());
+		for (IEclipsePreferences parent : this.observedParents) {
+			this.nodeChangeListener.unobserveChildren(parent);
+		}
+		this.observedParents.clear();
+	}
+
+	/**
+	 * @return <code>true</code> if {@link #dispose()} was called on this store
+	 */
+	public boolean isDisposed() {
+		return this.disposed;
+	}
+
+	/**
+	 * Return a handle that removes the listeners this store registered on
+	 * preference nodes to track the search path. The handle does not reference
+	 * the store, so it can be used to clean up after the store was garbage
+	 * collected, e.g. by a cache that only references the store weakly. Calling
+	 * the handle on a store that is still in use has the same effect on the
+	 * change tracking as {@link #dispose()}.
+	 *
+	 * @return the handle that removes the node listeners of this store
+	 */
+	public Runnable getNodeListenerRemoval() {
+		NodeListener children = this.nodeChangeListener;
+		NodeListener values = this.searchPathListener;
+		return () -> {
+			children.detach();
+			values.detach();
+		};
+	}
+
+	/**
+	 * Listener that is registered on the preference nodes to track the added and
+	 * removed nodes and the changes in the search path. It only references the
+	 * store weakly, so the nodes do not keep a store alive that is not used
+	 * anymore, e.g. after it was evicted from the cache of the
+	 * {@link IPreferenceStoreFactoryService}. The listener remembers the nodes
+	 * it is registered on, so it can be removed from all of them via
+	 * {@link #detach()}, also after the store was garbage collected. Otherwise
+	 * it removes itself on the next event once the store was collected.
+	 */
+	private static final class NodeListener
+			implements IEclipsePreferences.INodeChangeListener, IEclipsePreferences.IPreferenceChangeListener {
+
+		private final WeakReference<ScopedPreferenceStore> store;
+
+		/**
+		 * The nodes this listener is registered on as node change listener.
+		 */
+		private final Set<IEclipsePreferences> parents = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		/**
+		 * The nodes this listener is registered on as preference change listener.
+		 */
+		private final Set<IEclipsePreferences> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		NodeListener(ScopedPreferenceStore store) {
+			this.store = new WeakReference<>(store);
+		}
+
+		synchronized void observeChildren(IEclipsePreferences parent) {
+			if (this.parents.add(parent)) {
+				parent.addNodeChangeListener(this);
+			}
+		}
+
+		synchronized void unobserveChildren(IEclipsePreferences parent) {
+			this.parents.remove(parent);
+			try {
+				parent.removeNodeChangeListener(this);
+			} catch (IllegalStateException e) {
+				// the node was removed and has no listeners anymore
+			}
+		}
+
+		synchronized void observeValues(IEclipsePreferences node) {
+			if (this.nodes.add(node)) {
+				node.addPreferenceChangeListener(this);
+			}
+		}
+
+		synchronized void unobserveValues(IEclipsePreferences node) {
+			this.nodes.remove(node);
+			try {
+				node.removePreferenceChangeListener(this);
+			} catch (IllegalStateException e) {
+				// the node was removed and has no listeners anymore
+			}
+		}
+
+		/**
+		 * Remove this listener from all nodes it is registered on.
+		 */
+		synchronized void detach() {
+			for (IEclipsePreferences parent : this.parents.toArray(new IEclipsePreferences[0])) {
+				unobserveChildren(parent);
+			}
+			for (IEclipsePreferences node : this.nodes.toArray(new IEclipsePreferences[0])) {
+				unobserveValues(node);
+			}
+		}
+
+		@Override
+		public void added(NodeChangeEvent event) {
+			ScopedPreferenceStore target = this.store.get();
+			if (target != null) {
+				target.nodeAdded(event.getChild().name());
+			} else {
+				unobserveChildren((IEclipsePreferences) event.getParent());
+			}
+		}
+
+		@Override
+		public void removed(NodeChangeEvent event) {
+			ScopedPreferenceStore target = this.store.get();
+			if (target != null) {
+				target.nodeRemoved(event.getChild().name());
+			} else {
+				unobserveChildren((IEclipsePreferences) event.getParent());
+			}
+		}
+
+		@Override
+		public void preferenceChange(PreferenceChangeEvent event) {
+			ScopedPreferenceStore target = this.store.get();
+			if (target != null) {
+				target.searchPathChanged(event.getKey());
+			} else {
+				unobserveValues((IEclipsePreferences) event.getNode());
+			}
+		}
+	}
+
+	/**
+	 * State of a batch of modifications started via {@link #beginBatch()}.
+	 */
+	private static final class Batch {
+
+		/**
+		 * The nesting depth of {@link #beginBatch()} calls.
+		 */
+		int depth;
+
+		/**
+		 * The property changes collected while the batch is running, mapped by
+		 * key to the pair of the first old value and the last new value.
+		 */
+		final Map<String, Object[]> events = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Holder of the shared default save executor for stores without an executor
+	 * set, which is created on first access. As nobody owns its lifecycle, its
+	 * thread terminates when idle, so it does not keep the class loader of a
+	 * stopped bundle reachable.
+	 */
+	private static final class DefaultSaveExecutor {
+
+		static final ScheduledExecutorService INSTANCE = createExecutor();
+
+		private static ScheduledExecutorService createExecutor() {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread thread = new Thread(runnable, "ScopedPreferenceStore Save");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.setKeepAliveTime(10, TimeUnit.SECONDS);
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+	}
+
+	/**
+	 * Entry of the value cache. Holds the looked up string value and the value
+	 * parsed to the type that was requested last.
+	 */
+	private static final class CachedValue {
+
+		/**
+		 * The looked up value, <code>null</code> if the key is not set in any node
+		 * of the search path.
+		 */
+		final String value;
+
+		/**
+		 * The value parsed to the declared type of the key, <code>null</code> if
+		 * the key is not declared in the key schema.
+		 */
+		final Object declared;
+
+		/**
+		 * The parsed value, <code>null</code> if the value was not parsed yet.
+		 */
+		volatile Object parsed;
+
+		CachedValue(String value, PreferenceKey key) {
+			this.value = value;
+			this.declared = key != null ? key.parse(value) : null;
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link Executor} that executes the submitted tasks one after the other in
+ * submission order, using another {@link Executor} for the actual execution.
+ * Used by the {@link ScopedPreferenceStore} to notify a listener
+ * asynchronously while keeping the order of the events for that listener.
+ * The underlying {@link Executor} can be changed while tasks are queued. The
+ * queue itself is kept, so tasks that are already queued are still executed
+ * before tasks that are submitted afterwards.
+ */
+final class SerialExecutor implements Executor {
+
+	private Executor executor;
+
+	private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+	private boolean active;
+
+	SerialExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Queue the given task. If the underlying {@link Executor} rejects the
+	 * execution, e.g. because it was shut down, the queued tasks are executed
+	 * on the calling thread instead, so no task is lost.
+	 */
+	@Override
+	public void execute(Runnable task) {
+		Executor target;
+		synchronized (this) {
+			this.tasks.add(task);
+			if (this.active) {
+				return;
+			}
+			this.active = true;
+			target = this.executor;
+		}
+		try {
+			target.execute(this::drain);
+		} catch (RejectedExecutionException e) {
+			drain();
+		}
+	}
+
+	/**
+	 * Change the {@link Executor} used for the actual execution. A drain that is
+	 * currently running continues on the previous executor until the queue is
+	 * empty, so the submission order is kept.
+	 *
+	 * @param executor the executor to use for the next drain
+	 */
+	synchronized void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @return <code>true</code> if no tasks are queued or running
+	 */
+	synchronized boolean isIdle() {
+		return !this.active;
+	}
+
+	/**
+	 * Execute the queued tasks until the queue is empty.
+	 */
+	private void drain() {
+		while (true) {
+			Runnable task;
+			synchronized (this) {
+				task = this.tasks.poll();
+				if (task == null) {
+					this.active = false;
+					return;
+				}
+			}
+			task.run();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.impl;
+
+import org.fipro.e4.service.preferences.PreferenceNodeContribution;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * {@link PreferenceNodeContribution} that is created out of the service
+ * properties of a registered {@link PreferenceNodeContribution} service. As
+ * only the {@link ServiceReference} is needed, the contributed service is not
+ * requested and the contributing bundle is not activated before the page is
+ * opened.
+ */
+final class DeclaredPreferenceNodeContribution extends PreferenceNodeContribution {
+
+	private DeclaredPreferenceNodeContribution(
+			String id,
+			String label,
+			String pageClassName,
+			Bundle bundle,
+			String path,
+			String nodeQualifier) {
+		super(id, label, null, pageClassName, bundle, path, nodeQualifier);
+	}
+
+	/**
+	 * Create the contribution described by the service properties of the
+	 * given reference. The page class is loaded via the bundle that registered
+	 * the service.
+	 *
+	 * @param reference
+	 *            the reference of the {@link PreferenceNodeContribution}
+	 *            service
+	 * @return the contribution, or <code>null</code> if the service properties
+	 *         do not contain the node id and the page class name
+	 */
+	static PreferenceNodeContribution fromProperties(ServiceReference<?> reference) {
+		String id = getString(reference, PreferenceNodeContribution.NODE_ID);
+		String pageClassName = getString(reference, PreferenceNodeContribution.NODE_PAGE);
+		Bundle bundle = reference.getBundle();
+		if (id == null || pageClassName == null || bundle == null) {
+			return null;
+		}
+		String label = getString(reference, PreferenceNodeContribution.NODE_LABEL);
+		return new DeclaredPreferenceNodeContribution(
+				id,
+				(label != null) ? label : id,
+				pageClassName,
+				bundle,
+				getString(reference, PreferenceNodeContribution.NODE_PATH),
+				getString(reference, PreferenceNodeContribution.NODE_QUALIFIER));
+	}
+
+	/**
+	 * Return the qualifier of the node described by the service properties of
+	 * the given reference, without creating the contribution. Contributions
+	 * that create their nodes programmatically can set the
+	 * {@link PreferenceNodeContribution#NODE_QUALIFIER} property to announce
+	 * their qualifier.
+	 *
+	 * @param reference
+	 *            the reference of the {@link PreferenceNodeContribution}
+	 *            service
+	 * @return the qualifier of the node, the symbolic name of the contributing
+	 *         bundle for a described node without qualifier, or
+	 *         <code>null</code> if the qualifier is unknown
+	 */
+	static String getNodeQualifier(ServiceReference<?> reference) {
+		String qualifier = getString(reference, PreferenceNodeContribution.NODE_QUALIFIER);
+		if (qualifier != null) {
+			return qualifier;
+		}
+		Bundle bundle = reference.getBundle();
+		if (bundle != null
+				&& getString(reference, PreferenceNodeContribution.NODE_ID) != null
+				&& getString(reference, PreferenceNodeContribution.NODE_PAGE) != null) {
+			return bundle.getSymbolicName();
+		}
+		return null;
+	}
+
+	private static String getString(ServiceReference<?> reference, String key) {
+		Object value = reference.getProperty(key);
+		if (value == null) {
+			return null;
+		}
+		String result = String.valueOf(value).trim();
+		return result.isEmpty() ? null : result;
+	}
+}
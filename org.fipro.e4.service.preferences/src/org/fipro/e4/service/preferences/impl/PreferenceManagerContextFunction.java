@@ -10,34 +10,98 @@
  *******************************************************************************/
 package org.fipro.e4.service.preferences.impl;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.e4.core.contexts.ContextFunction;
 import org.eclipse.e4.core.contexts.IContextFunction;
 import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.jface.preference.IPreferenceNode;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.preference.PreferenceManager;
 import org.eclipse.jface.preference.PreferenceNode;
 import org.fipro.e4.service.preferences.ContributedPreferenceNode;
 import org.fipro.e4.service.preferences.IPreferenceStoreFactoryService;
 import org.fipro.e4.service.preferences.PreferenceNodeContribution;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentServiceObjects;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 
+/**
+ * {@link IContextFunction} that provides the {@link PreferenceManager} whose
+ * tree is built out of the bound {@link PreferenceNodeContribution}s.
+ * <p>
+ * By default the tree is built lazily. Binds are only recorded, and the whole
+ * tree is built in one pass on the first request of the
+ * {@link PreferenceManager}. Binds after that are applied directly. Setting
+ * the component property <code>tree.lazy</code> to <code>false</code> builds
+ * the tree on activation instead.
+ * </p>
+ * <p>
+ * Contributions that describe their node via service properties are created
+ * out of the {@link ServiceReference}, without requesting the service object.
+ * The service objects of the other contributions are requested when the tree
+ * is built, so a lazy tree does not activate the contributing components on
+ * startup.
+ * </p>
+ */
 @Component(
 	service = IContextFunction.class, 
-	property = "service.context.key=org.eclipse.jface.preference.PreferenceManager")
+	property = {
+		"service.context.key=org.eclipse.jface.preference.PreferenceManager",
+		PreferenceManagerContextFunction.LAZY_TREE + ":Boolean=true"
+	})
 public class PreferenceManagerContextFunction extends ContextFunction {
 
+	/**
+	 * Component property to configure whether the tree is built on the first
+	 * request of the {@link PreferenceManager} or on activation.
+	 */
+	static final String LAZY_TREE = "tree.lazy";
+
 	PreferenceManager mgr;
 
 	private IPreferenceStoreFactoryService service;
 	
-	private List<ContributedPreferenceNode> nodes = new ArrayList<>();
+	/**
+	 * Key in {@link #pendingNodes} for nodes that should be added to the root.
+	 */
+	private static final String ROOT_PATH = "";
+
+	/**
+	 * Nodes that could not be added yet, indexed by the path of the parent node
+	 * they are waiting for.
+	 */
+	private Map<String, List<ContributedPreferenceNode>> pendingNodes = new HashMap<>();
+
+	/**
+	 * The contributions bound via the service registry.
+	 */
+	private Map<ServiceReference<PreferenceNodeContribution>, PreferenceNodeContribution> contributions = new HashMap<>();
+
+	/**
+	 * The contributions bound via the service registry whose service objects
+	 * are requested once the tree is built.
+	 */
+	private Map<ServiceReference<PreferenceNodeContribution>, ComponentServiceObjects<PreferenceNodeContribution>> deferredContributions = new LinkedHashMap<>();
+
+	@Activate
+	void activate(Map<String, Object> properties) {
+		Object value = properties.get(LAZY_TREE);
+		if (value != null && !Boolean.parseBoolean(String.valueOf(value))) {
+			getManager();
+		}
+	}
 
 	@Override
     public Object compute(IEclipseContext context, String contextKey) {
@@ -51,7 +115,15 @@ public class PreferenceManagerContextFunction extends ContextFunction {
 	 */
 	protected synchronized PreferenceManager getManager() {
 		if (this.mgr == null) {
+			for (ComponentServiceObjects<PreferenceNodeContribution> objects : this.deferredContributions.values()) {
+				addContribution(objects.getServiceReference(), objects.getService());
+			}
+			this.deferredContributions.clear();
 			this.mgr = new PreferenceManager();
+			// build the tree out of the nodes recorded until now
+			if (this.service != null) {
+				resolvePendingNodes();
+			}
 		}
 		return mgr;
 	}
@@ -67,49 +139,135 @@ public class PreferenceManagerContextFunction extends ContextFunction {
 	@Reference(cardinality=ReferenceCardinality.MANDATORY)
 	public synchronized void addPreferenceStoreFactory(IPreferenceStoreFactoryService service) {
 		this.service = service;
-		for (Iterator<ContributedPreferenceNode> it = this.nodes.iterator(); it.hasNext();) {
-			if (addContributedPreferenceNode(it.next())) {
-				it.remove();
+		if (this.mgr != null) {
+			resolvePendingNodes();
+		}
+	}
+
+	/**
+	 * Bind a {@link PreferenceNodeContribution} service. If the node is
+	 * described by the service properties, the contribution is created out of
+	 * them and the service object is not requested. Otherwise the service
+	 * object is used, which is requested when the tree is built.
+	 * 
+	 * @param objects
+	 *            The {@link ComponentServiceObjects} of the
+	 *            {@link PreferenceNodeContribution} to bind.
+	 */
+	@Reference(
+		name = "PreferenceNode",
+		cardinality = ReferenceCardinality.MULTIPLE,
+		policy = ReferencePolicy.DYNAMIC,
+		unbind = "removePreferenceNodeContribution")
+	synchronized void addPreferenceNodeContribution(ComponentServiceObjects<PreferenceNodeContribution> objects) {
+		ServiceReference<PreferenceNodeContribution> reference = objects.getServiceReference();
+		PreferenceNodeContribution contribution = DeclaredPreferenceNodeContribution.fromProperties(reference);
+		if (contribution == null) {
+			if (this.mgr == null) {
+				this.deferredContributions.put(reference, objects);
+				return;
 			}
+			contribution = objects.getService();
+		}
+		addContribution(reference, contribution);
+	}
+
+	private void addContribution(ServiceReference<PreferenceNodeContribution> reference, PreferenceNodeContribution contribution) {
+		if (contribution != null) {
+			this.contributions.put(reference, contribution);
+			addPreferenceNode(contribution);
 		}
 	}
 
 	/**
-	 * Bind {@link PreferenceNodeContribution} that will add
-	 * {@link PreferenceNode}s to the {@link PreferenceManager} managed by this
+	 * Unbind a {@link PreferenceNodeContribution} service.
+	 * 
+	 * @param objects
+	 *            The {@link ComponentServiceObjects} of the
+	 *            {@link PreferenceNodeContribution} to unbind.
+	 */
+	synchronized void removePreferenceNodeContribution(ComponentServiceObjects<PreferenceNodeContribution> objects) {
+		if (this.deferredContributions.remove(objects.getServiceReference()) != null) {
+			// the service object was not requested yet
+			return;
+		}
+		PreferenceNodeContribution contribution = this.contributions.remove(objects.getServiceReference());
+		if (contribution != null) {
+			removePreferenceNode(contribution);
+			if (!(contribution instanceof DeclaredPreferenceNodeContribution)) {
+				objects.ungetService(contribution);
+			}
+		}
+	}
+
+	/**
+	 * Add the nodes of the given {@link PreferenceNodeContribution} to the
+	 * {@link PreferenceManager} managed by this
 	 * {@link PreferenceManagerSupplier}.
 	 * 
 	 * @param node
-	 *            The {@link PreferenceNodeContribution} to bind.
+	 *            The {@link PreferenceNodeContribution} to add.
 	 */
-	@Reference(cardinality=ReferenceCardinality.MULTIPLE, policy=ReferencePolicy.DYNAMIC)
 	public synchronized void addPreferenceNode(PreferenceNodeContribution node) {
 		for (ContributedPreferenceNode contribNode : node.getPreferenceNodes()) {
-			if (this.service != null) {
+			if (this.service != null && this.mgr != null) {
 				if (addContributedPreferenceNode(contribNode)) {
-					for (Iterator<ContributedPreferenceNode> it = this.nodes.iterator(); it.hasNext();) {
-						if (addContributedPreferenceNode(it.next())) {
-							it.remove();
-						}
-					}
+					resolvePendingNodes(contribNode.getFullPath());
 				} else {
 					// if we could not add a node to a path, we remember the node in case the
 					// configured parent node comes later
 					rememberContributedPreferenceNode(contribNode);
 				}
 			} else {
+				// the tree is not built yet, only record the node
 				rememberContributedPreferenceNode(contribNode);
 			}
 		}
 	}
 
 	private void rememberContributedPreferenceNode(ContributedPreferenceNode node) {
-		this.nodes.add(node);
-		this.nodes.sort((ContributedPreferenceNode o1, ContributedPreferenceNode o2) -> {
-			int depth1 = o1.getPath() == null ? 0 : o1.getPath().split("\\.").length;
-			int depth2 = o2.getPath() == null ? 0 : o2.getPath().split("\\.").length;
-			return depth1 - depth2;
-		});
+		String path = node.getPath() == null ? ROOT_PATH : node.getPath();
+		this.pendingNodes.computeIfAbsent(path, p -> new ArrayList<>()).add(node);
+	}
+
+	/**
+	 * Add all pending nodes whose parent is available. Starting with the root
+	 * nodes and cascading down from every added node adds the nodes in
+	 * topological order, so every node is touched once.
+	 */
+	private void resolvePendingNodes() {
+		resolvePendingNodes(ROOT_PATH);
+		for (String path : new ArrayList<>(this.pendingNodes.keySet())) {
+			if (this.pendingNodes.containsKey(path) && this.mgr.find(path) != null) {
+				resolvePendingNodes(path);
+			}
+		}
+	}
+
+	/**
+	 * Add the pending nodes that are waiting for the given path. As every added
+	 * node can be the parent other nodes are waiting for, the resolution
+	 * cascades down the tree. Only the nodes waiting for an added path are
+	 * touched, so the effort is proportional to the number of resolved nodes.
+	 * 
+	 * @param path
+	 *            the path of the node that was added
+	 */
+	private void resolvePendingNodes(String path) {
+		Deque<String> paths = new ArrayDeque<>();
+		paths.push(path);
+		while (!paths.isEmpty()) {
+			List<ContributedPreferenceNode> waiting = this.pendingNodes.remove(paths.pop());
+			if (waiting != null) {
+				for (ContributedPreferenceNode node : waiting) {
+					if (addContributedPreferenceNode(node)) {
+						paths.push(node.getFullPath());
+					} else {
+						rememberContributedPreferenceNode(node);
+					}
+				}
+			}
+		}
 	}
 	
 	private boolean addContributedPreferenceNode(ContributedPreferenceNode contribNode) {
@@ -125,14 +283,70 @@ public class PreferenceManagerContextFunction extends ContextFunction {
 	}
 	
 	/**
-	 * Unbind the given {@link PreferenceNodeContribution} from the
+	 * Remove the given {@link PreferenceNodeContribution} from the
 	 * {@link PreferenceManager} managed by this
 	 * {@link PreferenceManagerSupplier}.
 	 * 
 	 * @param node
-	 *            The {@link PreferenceNodeContribution} to unbind.
+	 *            The {@link PreferenceNodeContribution} to remove.
 	 */
 	public synchronized void removePreferenceNode(PreferenceNodeContribution node) {
-		node.getPreferenceNodes().forEach(getManager()::remove);
+		List<ContributedPreferenceNode> removed = node.getPreferenceNodes();
+		for (ContributedPreferenceNode contribNode : removed) {
+			// the node is not found if its parent was removed with this contribution before
+			if (!forgetPendingNode(contribNode)
+					&& this.mgr != null
+					&& this.mgr.find(contribNode.getFullPath()) == contribNode) {
+				this.mgr.remove(contribNode.getFullPath());
+				detachForeignSubNodes(contribNode, removed);
+			}
+			contribNode.dispose();
+		}
+	}
+
+	/**
+	 * Remove the given node from the pending nodes.
+	 * 
+	 * @param node
+	 *            the node to remove
+	 * @return <code>true</code> if the node was pending
+	 */
+	private boolean forgetPendingNode(ContributedPreferenceNode node) {
+		String path = node.getPath() == null ? ROOT_PATH : node.getPath();
+		List<ContributedPreferenceNode> waiting = this.pendingNodes.get(path);
+		if (waiting != null && waiting.remove(node)) {
+			if (waiting.isEmpty()) {
+				this.pendingNodes.remove(path);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Walk the subtree of a removed node and detach the nodes of other
+	 * contributions. They are remembered as pending, so they are added again if
+	 * a node with the same path is contributed later, e.g. after a bundle
+	 * update. The sub nodes of a detached node are detached and remembered
+	 * individually by the path of their parent, so a pending node can still be
+	 * removed when its contribution is unbound while its parent is pending.
+	 * 
+	 * @param parent
+	 *            the removed node whose sub nodes should be checked
+	 * @param removed
+	 *            the nodes of the removed contribution
+	 */
+	private void detachForeignSubNodes(IPreferenceNode parent, List<ContributedPreferenceNode> removed) {
+		for (IPreferenceNode child : parent.getSubNodes()) {
+			if (removed.contains(child)) {
+				detachForeignSubNodes(child, removed);
+			} else {
+				parent.remove(child);
+				if (child instanceof ContributedPreferenceNode) {
+					rememberContributedPreferenceNode((ContributedPreferenceNode) child);
+					detachForeignSubNodes(child, Collections.emptyList());
+				}
+			}
+		}
 	}
 }
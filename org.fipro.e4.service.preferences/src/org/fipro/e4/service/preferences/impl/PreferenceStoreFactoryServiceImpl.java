@@ -10,29 +10,596 @@
  *******************************************************************************/
 package org.fipro.e4.service.preferences.impl;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.core.runtime.preferences.IScopeContext;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.fipro.e4.service.preferences.IPreferenceStoreFactoryService;
+import org.fipro.e4.service.preferences.PreferenceNodeContribution;
+import org.fipro.e4.service.preferences.PreferenceStoreCacheStatistics;
+import org.fipro.e4.service.preferences.IPreferenceStoreMonitor;
+import org.fipro.e4.service.preferences.ScopedPreferenceStore;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.log.Logger;
+import org.osgi.service.log.LoggerFactory;
 
 /**
- * Implementation of {@link IPreferenceStoreFactoryService} that creates and manages instances of 
- * {@link ScopedPreferenceStore} for the instance scope and specified qualifiers.
+ * Implementation of {@link IPreferenceStoreFactoryService} that creates and manages instances of
+ * {@link ScopedPreferenceStore} for the specified scopes, qualifiers and search
+ * contexts. The created stores are cached, so layered stores are shared and
+ * their resolved node chains are reused.
+ * <p>
+ * The created stores are saved by a write-behind scheduler. Stores that become
+ * dirty are collected and flushed in one run periodically, or as soon as the
+ * number of dirty stores reaches a threshold. Every store is still saved on
+ * its own. On deactivation all dirty stores
+ * are flushed. The scheduler is configured via the component properties
+ * <code>flush.interval</code> (milliseconds, <code>0</code> disables the
+ * periodic flush) and <code>flush.threshold</code> (number of dirty stores,
+ * <code>0</code> disables the threshold).
+ * </p>
+ * <p>
+ * The number of cached stores can be limited via the component property
+ * <code>cache.size</code>. If the limit is exceeded, the cache drops its
+ * reference to the least recently requested store. A store is only shared as
+ * long as it is referenced, so an evicted store that is still in use, e.g.
+ * by a preference page or because property change listeners are attached, is
+ * still returned for its key, and a new store is only created after the
+ * evicted one was garbage collected. By default the cache is unbounded.
+ * </p>
+ * <p>
+ * To avoid loading preference nodes on first access, e.g. in the UI thread,
+ * the stores for the qualifiers of the bound
+ * {@link PreferenceNodeContribution}s and of the qualifiers configured via
+ * the component property <code>warmup.qualifiers</code> are created and their
+ * nodes are loaded on a background pool after activation. The qualifiers of
+ * the contributions are taken from their service properties, so the
+ * contributed services are not requested. The warm-up is not counted in the
+ * cache statistics. The number of threads is configured via
+ * <code>warmup.threads</code>, <code>0</code> disables the warm-up.
+ * </p>
  */
-@Component
+@Component(
+	property = {
+		PreferenceStoreFactoryServiceImpl.FLUSH_INTERVAL + ":Long=5000",
+		PreferenceStoreFactoryServiceImpl.FLUSH_THRESHOLD + ":Integer=20",
+		PreferenceStoreFactoryServiceImpl.CACHE_SIZE + ":Integer=0",
+		PreferenceStoreFactoryServiceImpl.WARMUP_THREADS + ":Integer=2"
+	})
 public class PreferenceStoreFactoryServiceImpl implements IPreferenceStoreFactoryService {
 
-	protected Map<String, IPreferenceStore> storeReferences = new HashMap<>();
-	
+	/**
+	 * Component property to configure the interval in milliseconds in which
+	 * dirty stores are flushed.
+	 */
+	static final String FLUSH_INTERVAL = "flush.interval";
+
+	/**
+	 * Component property to configure the number of dirty stores that triggers
+	 * an immediate flush.
+	 */
+	static final String FLUSH_THRESHOLD = "flush.threshold";
+
+	/**
+	 * Component property to configure the maximum number of cached stores,
+	 * <code>0</code> for an unbounded cache.
+	 */
+	static final String CACHE_SIZE = "cache.size";
+
+	/**
+	 * Component property to configure the qualifiers whose stores should be
+	 * created and loaded in the background after activation.
+	 */
+	static final String WARMUP_QUALIFIERS = "warmup.qualifiers";
+
+	/**
+	 * Component property to configure the number of threads used to warm up the
+	 * stores, <code>0</code> to disable the warm-up.
+	 */
+	static final String WARMUP_THREADS = "warmup.threads";
+
+	/**
+	 * The created stores per scope, qualifier and search contexts. A concurrent
+	 * map is used so a store is created only once per key, even if it is
+	 * requested concurrently, e.g. by the DI supplier and the context function.
+	 * If the cache is bounded, the stores are only weakly referenced in this
+	 * map, so a store stays shared as long as it is used.
+	 */
+	protected Map<StoreKey, StoreReference> storeReferences = new ConcurrentHashMap<>();
+
+	/**
+	 * The queue of the weakly referenced stores that were garbage collected.
+	 */
+	private final ReferenceQueue<IPreferenceStore> collectedStores = new ReferenceQueue<>();
+
+	private final Set<ScopedPreferenceStore> dirtyStores = ConcurrentHashMap.newKeySet();
+
+	private ScheduledExecutorService flushExecutor;
+
+	private int flushThreshold;
+
+	private int maxCacheSize;
+
+	/**
+	 * The most recently requested stores in access order, only used if the
+	 * cache is bounded. Keeps the stores reachable that would otherwise only be
+	 * weakly referenced. Guarded by itself.
+	 */
+	private final Map<StoreKey, IPreferenceStore> recentStores = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<StoreKey, IPreferenceStore> eldest) {
+			if (size() > maxCacheSize) {
+				evictionCount.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * The qualifiers of the instance scope stores that are or will be warmed up.
+	 */
+	private final Set<String> warmUpQualifiers = ConcurrentHashMap.newKeySet();
+
+	private volatile ExecutorService warmUpExecutor;
+
+	private volatile LoggerFactory loggerFactory;
+
+	private volatile IPreferenceStoreMonitor monitor;
+
+	@Activate
+	void activate(Map<String, Object> properties) {
+		long flushInterval = getLong(properties.get(FLUSH_INTERVAL), 5000);
+		this.flushThreshold = (int) getLong(properties.get(FLUSH_THRESHOLD), 20);
+		this.maxCacheSize = (int) getLong(properties.get(CACHE_SIZE), 0);
+
+		this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Preference Store Flush");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (flushInterval > 0) {
+			// also purge the collected stores, so their node listeners are removed
+			// even if no stores are requested anymore
+			this.flushExecutor.scheduleWithFixedDelay(() -> {
+				flushDirtyStores();
+				purgeCollectedStores();
+			}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		}
+
+		int warmUpThreads = (int) getLong(properties.get(WARMUP_THREADS), 2);
+		if (warmUpThreads > 0) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(
+					warmUpThreads, warmUpThreads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+						Thread thread = new Thread(runnable, "Preference Store Warm-up");
+						thread.setDaemon(true);
+						return thread;
+					});
+			// do not keep idle threads once the warm-up is done
+			executor.allowCoreThreadTimeOut(true);
+			this.warmUpQualifiers.addAll(getStrings(properties.get(WARMUP_QUALIFIERS)));
+			this.warmUpExecutor = executor;
+			// qualifiers bound before activation were only collected
+			for (String qualifier : this.warmUpQualifiers) {
+				submitWarmUp(executor, qualifier);
+			}
+		}
+	}
+
+	@Deactivate
+	void deactivate() {
+		ExecutorService warmUp = this.warmUpExecutor;
+		if (warmUp != null) {
+			this.warmUpExecutor = null;
+			warmUp.shutdownNow();
+		}
+		// cancels the periodic flush, a running flush and pending asynchronous
+		// saves are still performed
+		this.flushExecutor.shutdown();
+		try {
+			if (!this.flushExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+				this.flushExecutor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			this.flushExecutor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		flushDirtyStores();
+	}
+
 	@Override
 	public IPreferenceStore getPreferenceStoreInstance(String qualifier) {
-		if (!this.storeReferences.containsKey(qualifier)) {
-			this.storeReferences.put(qualifier, new ScopedPreferenceStore(InstanceScope.INSTANCE, qualifier));
+		return getPreferenceStoreInstance(InstanceScope.INSTANCE, qualifier);
+	}
+
+	@Override
+	public IPreferenceStore getPreferenceStoreInstance(IScopeContext scope, String qualifier,
+			IScopeContext... searchContexts) {
+		this.requestCount.incrementAndGet();
+		return getPreferenceStore(new StoreKey(scope, qualifier, searchContexts), true);
+	}
+
+	/**
+	 * Return the cached store for the given key, or create it if it is not
+	 * cached.
+	 *
+	 * @param key
+	 *            the key of the requested store
+	 * @param counted
+	 *            <code>true</code> if a created store should be counted as
+	 *            cache miss, <code>false</code> for the warm-up
+	 * @return the store for the given key
+	 */
+	private IPreferenceStore getPreferenceStore(StoreKey key, boolean counted) {
+		purgeCollectedStores();
+		StoreReference reference = this.storeReferences.get(key);
+		IPreferenceStore store = (reference != null) ? reference.get() : null;
+		if (store == null) {
+			IPreferenceStore[] result = new IPreferenceStore[1];
+			this.storeReferences.compute(key, (k, existing) -> {
+				result[0] = (existing != null) ? existing.get() : null;
+				if (result[0] != null) {
+					return existing;
+				}
+				if (counted) {
+					this.missCount.incrementAndGet();
+				}
+				result[0] = createPreferenceStore(k);
+				return new StoreReference(k, result[0], this.collectedStores, this.maxCacheSize <= 0);
+			});
+			store = result[0];
+		}
+		if (this.maxCacheSize > 0) {
+			synchronized (this.recentStores) {
+				this.recentStores.put(key, store);
+			}
+		}
+		return store;
+	}
+
+	@Override
+	public PreferenceStoreCacheStatistics getCacheStatistics() {
+		long misses = this.missCount.get();
+		purgeCollectedStores();
+		return new PreferenceStoreCacheStatistics(
+				this.storeReferences.size(),
+				this.maxCacheSize,
+				Math.max(0, this.requestCount.get() - misses),
+				misses,
+				this.evictionCount.get());
+	}
+
+	/**
+	 * Remove the entries of the stores that were garbage collected after they
+	 * were evicted, and remove the listeners the collected stores registered on
+	 * the preference nodes. Dirty stores are not collected before they were
+	 * flushed, as they are referenced until the next flush.
+	 */
+	private void purgeCollectedStores() {
+		StoreReference reference;
+		while ((reference = (StoreReference) this.collectedStores.poll()) != null) {
+			this.storeReferences.remove(reference.key, reference);
+			if (reference.nodeListenerRemoval != null) {
+				reference.nodeListenerRemoval.run();
+			}
+		}
+	}
+
+	/**
+	 * Create the {@link ScopedPreferenceStore} for the given key. Called at most
+	 * once per key, only the creations for the same key are blocked meanwhile.
+	 *
+	 * @param key
+	 *            the key of the store to create
+	 * @return the created store
+	 */
+	private IPreferenceStore createPreferenceStore(StoreKey key) {
+		ScopedPreferenceStore store = new ScopedPreferenceStore(key.scope, key.qualifier);
+		if (key.searchContexts.length > 0) {
+			store.setSearchContexts(key.searchContexts);
+		}
+		store.setDirtyHandler(this::storeDirty);
+		// asynchronous saves use the executor owned by this component, which is
+		// shut down on deactivation
+		store.setSaveExecutor(this.flushExecutor);
+		store.setMonitor(this.monitor);
+		return store;
+	}
+
+	/**
+	 * Called by a managed store when it becomes dirty. Remembers the store for
+	 * the next flush and triggers the flush if the threshold is reached.
+	 *
+	 * @param store
+	 *            the store that became dirty
+	 */
+	private void storeDirty(ScopedPreferenceStore store) {
+		if (this.dirtyStores.add(store)
+				&& this.flushThreshold > 0
+				&& this.dirtyStores.size() >= this.flushThreshold) {
+			ScheduledExecutorService executor = this.flushExecutor;
+			if (executor != null && !executor.isShutdown()) {
+				executor.execute(this::flushDirtyStores);
+			}
+		}
+	}
+
+	/**
+	 * Flush all stores that became dirty since the last flush. Only the
+	 * scheduling is batched, every store is still saved on its own, as every
+	 * qualifier node is persisted in its own file.
+	 */
+	void flushDirtyStores() {
+		for (ScopedPreferenceStore store : this.dirtyStores) {
+			this.dirtyStores.remove(store);
+			if (store.needsSaving()) {
+				try {
+					store.saveNow();
+				} catch (IOException e) {
+					Logger logger = getLogger();
+					if (logger != null) {
+						logger.error("Error on saving the preference store {}", store.getNodeQualifier(), e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Bind a {@link PreferenceNodeContribution} to warm up the store of the
+	 * qualifier of its node. Only the service properties are used, the
+	 * service object is never requested, so binding does not activate the
+	 * contributing component. Contributions without a qualifier in their
+	 * service properties are not warmed up.
+	 *
+	 * @param reference
+	 *            the {@link ServiceReference} of the
+	 *            {@link PreferenceNodeContribution} to bind
+	 */
+	@Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
+	void addPreferenceNodeContribution(ServiceReference<PreferenceNodeContribution> reference) {
+		String qualifier = DeclaredPreferenceNodeContribution.getNodeQualifier(reference);
+		if (qualifier != null && this.warmUpQualifiers.add(qualifier)) {
+			ExecutorService executor = this.warmUpExecutor;
+			if (executor != null) {
+				submitWarmUp(executor, qualifier);
+			}
+		}
+	}
+
+	/**
+	 * Unbind a {@link PreferenceNodeContribution}. The stores that were warmed
+	 * up stay in the cache.
+	 *
+	 * @param reference
+	 *            the {@link ServiceReference} of the
+	 *            {@link PreferenceNodeContribution} to unbind
+	 */
+	void removePreferenceNodeContribution(ServiceReference<PreferenceNodeContribution> reference) {
+		// nothing to do, the qualifiers are kept to avoid another warm-up
+	}
+
+	private void submitWarmUp(ExecutorService executor, String qualifier) {
+		try {
+			executor.execute(() -> warmUp(qualifier));
+		} catch (RejectedExecutionException e) {
+			// deactivated meanwhile
+		}
+	}
+
+	/**
+	 * Create the instance scope store for the given qualifier and load the nodes
+	 * of its search path including the defaults.
+	 *
+	 * @param qualifier
+	 *            the qualifier of the store to warm up
+	 */
+	private void warmUp(String qualifier) {
+		try {
+			IPreferenceStore store = getPreferenceStore(new StoreKey(InstanceScope.INSTANCE, qualifier, null), false);
+			if (store instanceof ScopedPreferenceStore) {
+				((ScopedPreferenceStore) store).getPreferenceNodes(true);
+			}
+		} catch (RuntimeException e) {
+			Logger logger = getLogger();
+			if (logger != null) {
+				logger.warn("Error on warming up the preference store {}", qualifier, e);
+			}
 		}
-		return this.storeReferences.get(qualifier);
 	}
 
+	private Logger getLogger() {
+		LoggerFactory factory = this.loggerFactory;
+		return factory != null ? factory.getLogger(getClass()) : null;
+	}
+
+	private static long getLong(Object value, long defaultValue) {
+		if (value instanceof Number) {
+			return ((Number) value).longValue();
+		} else if (value instanceof String) {
+			return Long.parseLong((String) value);
+		}
+		return defaultValue;
+	}
+
+	private static Collection<String> getStrings(Object value) {
+		if (value instanceof String[]) {
+			return Arrays.asList((String[]) value);
+		} else if (value instanceof String) {
+			List<String> result = new ArrayList<>();
+			for (String qualifier : ((String) value).split(",")) {
+				if (!qualifier.trim().isEmpty()) {
+					result.add(qualifier.trim());
+				}
+			}
+			return result;
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Bind the {@link LoggerFactory} that is used to report errors on flushing
+	 * the managed stores.
+	 *
+	 * @param factory
+	 *            the {@link LoggerFactory} to bind
+	 */
+	@Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+	void setLoggerFactory(LoggerFactory factory) {
+		this.loggerFactory = factory;
+	}
+
+	/**
+	 * Bind the {@link IPreferenceStoreMonitor} that is set to all managed stores.
+	 * Monitors that are registered with the service property
+	 * <code>metrics.enabled=false</code> are not bound, so the metrics component
+	 * is not activated on startup while the metrics are disabled.
+	 *
+	 * @param monitor
+	 *            the {@link IPreferenceStoreMonitor} to bind
+	 */
+	@Reference(
+		cardinality = ReferenceCardinality.OPTIONAL,
+		policy = ReferencePolicy.DYNAMIC,
+		target = "(!(" + PreferenceStoreMetricsImpl.METRICS_ENABLED + "=false))")
+	void setPreferenceStoreMonitor(IPreferenceStoreMonitor monitor) {
+		this.monitor = monitor;
+		updateMonitor(monitor);
+	}
+
+	/**
+	 * Unbind the {@link IPreferenceStoreMonitor} and remove it from the managed
+	 * stores.
+	 *
+	 * @param monitor
+	 *            the {@link IPreferenceStoreMonitor} to unbind
+	 */
+	void unsetPreferenceStoreMonitor(IPreferenceStoreMonitor monitor) {
+		if (this.monitor == monitor) {
+			this.monitor = null;
+			updateMonitor(null);
+		}
+	}
+
+	private void updateMonitor(IPreferenceStoreMonitor monitor) {
+		for (StoreReference reference : this.storeReferences.values()) {
+			IPreferenceStore store = reference.get();
+			if (store instanceof ScopedPreferenceStore) {
+				((ScopedPreferenceStore) store).setMonitor(monitor);
+			}
+		}
+	}
+
+	/**
+	 * Unbind the {@link LoggerFactory}.
+	 *
+	 * @param factory
+	 *            the {@link LoggerFactory} to unbind
+	 */
+	void unsetLoggerFactory(LoggerFactory factory) {
+		if (this.loggerFactory == factory) {
+			this.loggerFactory = null;
+		}
+	}
+
+	/**
+	 * Reference to a created store. The store is referenced weakly if the cache
+	 * is bounded, otherwise it is also referenced strongly, so it is never
+	 * garbage collected. Holds the handle to remove the node listeners of a
+	 * {@link ScopedPreferenceStore} once it was collected.
+	 */
+	static final class StoreReference extends WeakReference<IPreferenceStore> {
+
+		final StoreKey key;
+
+		/**
+		 * Keeps the store of an unbounded cache reachable.
+		 */
+		final IPreferenceStore strongReference;
+
+		/**
+		 * Removes the node listeners of the store, <code>null</code> if the store
+		 * is not a {@link ScopedPreferenceStore}.
+		 */
+		final Runnable nodeListenerRemoval;
+
+		StoreReference(StoreKey key, IPreferenceStore store, ReferenceQueue<IPreferenceStore> queue, boolean strong) {
+			super(store, queue);
+			this.key = key;
+			this.strongReference = strong ? store : null;
+			this.nodeListenerRemoval = (store instanceof ScopedPreferenceStore)
+					? ((ScopedPreferenceStore) store).getNodeListenerRemoval()
+					: null;
+		}
+	}
+
+	/**
+	 * Composite key of a cached store.
+	 */
+	static final class StoreKey {
+
+		final IScopeContext scope;
+		final String qualifier;
+		final IScopeContext[] searchContexts;
+		private final int hash;
+
+		StoreKey(IScopeContext scope, String qualifier, IScopeContext[] searchContexts) {
+			this.scope = Objects.requireNonNull(scope);
+			this.qualifier = Objects.requireNonNull(qualifier);
+			this.searchContexts = searchContexts != null ? searchContexts.clone() : new IScopeContext[0];
+			this.hash = Objects.hash(scope, qualifier) * 31 + Arrays.hashCode(this.searchContexts);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof StoreKey)) {
+				return false;
+			}
+			StoreKey other = (StoreKey) obj;
+			return this.scope.equals(other.scope)
+					&& this.qualifier.equals(other.qualifier)
+					&& Arrays.equals(this.searchContexts, other.searchContexts);
+		}
+	}
 }
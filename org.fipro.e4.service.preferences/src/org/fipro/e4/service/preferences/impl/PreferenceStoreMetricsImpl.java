@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Dirk Fauth.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Dirk Fauth <dirk.fauth@googlemail.com> - initial API and implementation
+ *******************************************************************************/
+package org.fipro.e4.service.preferences.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.fipro.e4.service.preferences.IPreferenceStoreMetrics;
+import org.fipro.e4.service.preferences.IPreferenceStoreMonitor;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+
+/**
+ * Implementation of {@link IPreferenceStoreMetrics} that collects the metrics
+ * as {@link IPreferenceStoreMonitor} of the stores created by the
+ * {@link PreferenceStoreFactoryServiceImpl}. The collection is disabled by
+ * default and can be enabled via the component property
+ * <code>metrics.enabled</code>. The factory only binds the monitor while the
+ * property is <code>true</code>, so the component is not activated and the
+ * MXBean is not registered on startup while the metrics are disabled. Once
+ * activated, the collection can be paused at runtime via JMX. While disabled,
+ * the stores do not notify the monitor.
+ */
+@Component(
+	service = { IPreferenceStoreMetrics.class, IPreferenceStoreMonitor.class },
+	property = PreferenceStoreMetricsImpl.METRICS_ENABLED + ":Boolean=false")
+public class PreferenceStoreMetricsImpl implements IPreferenceStoreMetrics, IPreferenceStoreMonitor {
+
+	/**
+	 * Component property to enable the collection of metrics.
+	 */
+	static final String METRICS_ENABLED = "metrics.enabled";
+
+	static final String OBJECT_NAME = "org.fipro.e4.service.preferences:type=PreferenceStoreMetrics";
+
+	private static final long[] BUCKET_BOUNDS = { 10, 100, 1_000, 10_000, 100_000, 1_000_000 };
+
+	private volatile boolean enabled;
+
+	private final Map<String, QualifierMetrics> qualifierMetrics = new ConcurrentHashMap<>();
+
+	private final Map<String, Long> maxListenerDurations = new ConcurrentHashMap<>();
+
+	private final LongAdder flushFailures = new LongAdder();
+
+	private final Histogram listenerDurations = new Histogram();
+
+	private final Histogram flushDurations = new Histogram();
+
+	private ObjectName objectName;
+
+	@Activate
+	void activate(Map<String, Object> properties) {
+		modified(properties);
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+				this.objectName = name;
+			}
+		} catch (JMException | SecurityException e) {
+			// the metrics are still available as service
+		}
+	}
+
+	@Modified
+	void modified(Map<String, Object> properties) {
+		Object value = properties.get(METRICS_ENABLED);
+		this.enabled = value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(String.valueOf(value));
+	}
+
+	@Deactivate
+	void deactivate() {
+		if (this.objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+			} catch (JMException e) {
+				// already unregistered
+			}
+			this.objectName = null;
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void reset() {
+		this.qualifierMetrics.clear();
+		this.maxListenerDurations.clear();
+		this.flushFailures.reset();
+		this.listenerDurations.reset();
+		this.flushDurations.reset();
+	}
+
+	@Override
+	public void valueRead(String qualifier) {
+		if (!this.enabled) {
+			return;
+		}
+		getQualifierMetrics(qualifier).reads.increment();
+	}
+
+	@Override
+	public void valueCacheAccessed(String qualifier, boolean hit) {
+		if (!this.enabled) {
+			return;
+		}
+		QualifierMetrics metrics = getQualifierMetrics(qualifier);
+		if (hit) {
+			metrics.cacheHits.increment();
+		} else {
+			metrics.cacheMisses.increment();
+		}
+	}
+
+	@Override
+	public void valueWritten(String qualifier) {
+		if (!this.enabled) {
+			return;
+		}
+		getQualifierMetrics(qualifier).writes.increment();
+	}
+
+	@Override
+	public void listenerNotified(String qualifier, IPropertyChangeListener listener, long durationNanos) {
+		if (!this.enabled) {
+			return;
+		}
+		getQualifierMetrics(qualifier).notifications.increment();
+		long micros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+		this.listenerDurations.record(micros);
+		this.maxListenerDurations.merge(listener.getClass().getName(), micros, Math::max);
+	}
+
+	@Override
+	public void storeFlushed(String qualifier, long durationNanos, boolean success) {
+		if (!this.enabled) {
+			return;
+		}
+		getQualifierMetrics(qualifier).flushes.increment();
+		if (!success) {
+			this.flushFailures.increment();
+		}
+		this.flushDurations.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+	}
+
+	private QualifierMetrics getQualifierMetrics(String qualifier) {
+		QualifierMetrics metrics = this.qualifierMetrics.get(qualifier);
+		if (metrics == null) {
+			metrics = this.qualifierMetrics.computeIfAbsent(qualifier, q -> new QualifierMetrics());
+		}
+		return metrics;
+	}
+
+	@Override
+	public Map<String, Long> getReadCounts() {
+		return collect(metrics -> metrics.reads);
+	}
+
+	@Override
+	public Map<String, Long> getCacheHitCounts() {
+		return collect(metrics -> metrics.cacheHits);
+	}
+
+	@Override
+	public Map<String, Long> getCacheMissCounts() {
+		return collect(metrics -> metrics.cacheMisses);
+	}
+
+	@Override
+	public double getCacheHitRate() {
+		long hits = 0;
+		long misses = 0;
+		for (QualifierMetrics metrics : this.qualifierMetrics.values()) {
+			hits += metrics.cacheHits.sum();
+			misses += metrics.cacheMisses.sum();
+		}
+		long lookups = hits + misses;
+		return lookups > 0 ? (double) hits / lookups : 0;
+	}
+
+	@Override
+	public Map<String, Long> getWriteCounts() {
+		return collect(metrics -> metrics.writes);
+	}
+
+	@Override
+	public Map<String, Long> getListenerNotificationCounts() {
+		return collect(metrics -> metrics.notifications);
+	}
+
+	@Override
+	public Map<String, Long> getMaxListenerDurations() {
+		return new TreeMap<>(this.maxListenerDurations);
+	}
+
+	@Override
+	public Map<String, Long> getFlushCounts() {
+		return collect(metrics -> metrics.flushes);
+	}
+
+	@Override
+	public long getFlushFailureCount() {
+		return this.flushFailures.sum();
+	}
+
+	@Override
+	public long[] getHistogramBucketBounds() {
+		return BUCKET_BOUNDS.clone();
+	}
+
+	@Override
+	public long[] getListenerDurationHistogram() {
+		return this.listenerDurations.toArray();
+	}
+
+	@Override
+	public long[] getFlushDurationHistogram() {
+		return this.flushDurations.toArray();
+	}
+
+	private Map<String, Long> collect(Function<QualifierMetrics, LongAdder> counter) {
+		Map<String, Long> result = new TreeMap<>();
+		this.qualifierMetrics.forEach((qualifier, metrics) -> {
+			long count = counter.apply(metrics).sum();
+			if (count > 0) {
+				result.put(qualifier, count);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * The counters of a single qualifier.
+	 */
+	private static final class QualifierMetrics {
+		final LongAdder reads = new LongAdder();
+		final LongAdder cacheHits = new LongAdder();
+		final LongAdder cacheMisses = new LongAdder();
+		final LongAdder writes = new LongAdder();
+		final LongAdder notifications = new LongAdder();
+		final LongAdder flushes = new LongAdder();
+	}
+
+	/**
+	 * Histogram of durations in microseconds with the buckets defined by
+	 * {@link PreferenceStoreMetricsImpl#BUCKET_BOUNDS}.
+	 */
+	private static final class Histogram {
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+		void record(long micros) {
+			int bucket = 0;
+			while (bucket < BUCKET_BOUNDS.length && micros > BUCKET_BOUNDS[bucket]) {
+				bucket++;
+			}
+			this.buckets.incrementAndGet(bucket);
+		}
+
+		void reset() {
+			for (int i = 0; i < this.buckets.length(); i++) {
+				this.buckets.set(i, 0);
+			}
+		}
+
+		long[] toArray() {
+			long[] result = new long[this.buckets.length()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = this.buckets.get(i);
+			}
+			return result;
+		}
+	}
+}